@@ -0,0 +1,302 @@
+/**
+ *  Copyright 2021 Gunnar Morling
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package dev.morling.demos.simdfizzbuzz;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares two JMH result files in JSON format, as written by {@link BenchmarkSuite},
+ * and flags the benchmarks whose primary score got worse by more than a threshold.
+ * Results are matched by benchmark, mode and parameters; for throughput, higher
+ * scores are better, for all other modes lower ones. A change is only considered a
+ * regression if the error intervals of both scores don't overlap either. Usage:
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar dev.morling.demos.simdfizzbuzz.BenchmarkComparator \
+ *     &lt;baseline.json&gt; &lt;candidate.json&gt; [threshold in percent, default 5]
+ * </pre>
+ *
+ * Exits with status 1 if there are regressions.
+ */
+public class BenchmarkComparator {
+
+    public record Score(double score, double error, String unit) {
+    }
+
+    public record Comparison(String benchmark, String mode, Score baseline, Score candidate) {
+
+        /**
+         * Returns the relative change of the score, positive values meaning an improvement.
+         */
+        public double change() {
+            double change = (candidate.score() - baseline.score()) / baseline.score();
+            return "thrpt".equals(mode) ? change : -change;
+        }
+
+        public boolean isRegression(double threshold) {
+            boolean overlapping = "thrpt".equals(mode)
+                    ? candidate.score() + candidate.error() >= baseline.score() - baseline.error()
+                    : candidate.score() - candidate.error() <= baseline.score() + baseline.error();
+
+            return change() < -threshold && !overlapping;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BenchmarkComparator <baseline.json> <candidate.json> [threshold in percent]");
+            System.exit(2);
+        }
+
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) / 100 : 0.05;
+        List<Comparison> comparisons = compare(Path.of(args[0]), Path.of(args[1]));
+
+        int regressions = 0;
+        for (Comparison comparison : comparisons) {
+            boolean regression = comparison.isRegression(threshold);
+            if (regression) {
+                regressions++;
+            }
+
+            System.out.printf("%-100s %6s %16.3f %16.3f %-10s %+8.2f%% %s%n",
+                    comparison.benchmark(),
+                    comparison.mode(),
+                    comparison.baseline().score(),
+                    comparison.candidate().score(),
+                    comparison.candidate().unit(),
+                    comparison.change() * 100,
+                    regression ? "REGRESSION" : "");
+        }
+
+        System.out.printf("%d benchmarks compared, %d regressions (threshold %.1f%%)%n", comparisons.size(), regressions, threshold * 100);
+
+        if (regressions > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Returns the comparisons of all benchmarks contained in both files.
+     */
+    public static List<Comparison> compare(Path baseline, Path candidate) throws IOException {
+        Map<String, Score> baselineScores = scores(Files.readString(baseline));
+        Map<String, Score> candidateScores = scores(Files.readString(candidate));
+
+        List<Comparison> comparisons = new ArrayList<>();
+        for (Map.Entry<String, Score> entry : baselineScores.entrySet()) {
+            Score candidateScore = candidateScores.get(entry.getKey());
+            if (candidateScore != null) {
+                int separator = entry.getKey().lastIndexOf(' ');
+                comparisons.add(new Comparison(entry.getKey().substring(0, separator), entry.getKey().substring(separator + 1),
+                        entry.getValue(), candidateScore));
+            }
+        }
+
+        return comparisons;
+    }
+
+    /**
+     * Returns the primary scores of the given JMH JSON results, keyed by benchmark
+     * name and parameters, followed by a space and the mode.
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, Score> scores(String json) {
+        Map<String, Score> scores = new LinkedHashMap<>();
+
+        for (Object element : (List<Object>) new JsonReader(json).read()) {
+            Map<String, Object> result = (Map<String, Object>) element;
+            Map<String, Object> params = (Map<String, Object>) result.getOrDefault("params", Map.of());
+            Map<String, Object> primaryMetric = (Map<String, Object>) result.get("primaryMetric");
+
+            String key = result.get("benchmark") + (params.isEmpty() ? "" : new TreeMap<>(params).toString()) + " " + result.get("mode");
+            double error = toDouble(primaryMetric.get("scoreError"));
+
+            scores.put(key, new Score(
+                    toDouble(primaryMetric.get("score")),
+                    Double.isNaN(error) ? 0 : error,
+                    (String) primaryMetric.get("scoreUnit")));
+        }
+
+        return scores;
+    }
+
+    // JMH writes non-finite values as strings
+    private static double toDouble(Object value) {
+        return value instanceof Double d ? d : Double.parseDouble(String.valueOf(value));
+    }
+
+    /**
+     * A minimal JSON reader, sufficient for JMH result files. Objects are read as
+     * maps, arrays as lists and numbers as doubles.
+     */
+    private static class JsonReader {
+
+        private final String json;
+        private int position;
+
+        JsonReader(String json) {
+            this.json = json;
+        }
+
+        Object read() {
+            Object value = value();
+            skipWhitespace();
+            if (position != json.length()) {
+                throw error("Unexpected content");
+            }
+            return value;
+        }
+
+        private Object value() {
+            skipWhitespace();
+            if (position == json.length()) {
+                throw error("Unexpected end of input");
+            }
+
+            return switch (json.charAt(position)) {
+                case '{' -> object();
+                case '[' -> array();
+                case '"' -> string();
+                default -> literal();
+            };
+        }
+
+        private Object literal() {
+            if (json.startsWith("true", position)) {
+                position += 4;
+                return Boolean.TRUE;
+            }
+            if (json.startsWith("false", position)) {
+                position += 5;
+                return Boolean.FALSE;
+            }
+            if (json.startsWith("null", position)) {
+                position += 4;
+                return null;
+            }
+            return number();
+        }
+
+        private Map<String, Object> object() {
+            Map<String, Object> object = new LinkedHashMap<>();
+            position++;
+            skipWhitespace();
+            if (json.charAt(position) == '}') {
+                position++;
+                return object;
+            }
+
+            while (true) {
+                skipWhitespace();
+                String key = string();
+                skipWhitespace();
+                expect(':');
+                object.put(key, value());
+                skipWhitespace();
+                if (json.charAt(position) == '}') {
+                    position++;
+                    return object;
+                }
+                expect(',');
+            }
+        }
+
+        private List<Object> array() {
+            List<Object> array = new ArrayList<>();
+            position++;
+            skipWhitespace();
+            if (json.charAt(position) == ']') {
+                position++;
+                return array;
+            }
+
+            while (true) {
+                array.add(value());
+                skipWhitespace();
+                if (json.charAt(position) == ']') {
+                    position++;
+                    return array;
+                }
+                expect(',');
+            }
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder string = new StringBuilder();
+
+            while (true) {
+                char c = json.charAt(position++);
+                if (c == '"') {
+                    return string.toString();
+                }
+                if (c != '\\') {
+                    string.append(c);
+                    continue;
+                }
+
+                char escaped = json.charAt(position++);
+                switch (escaped) {
+                    case 'b' -> string.append('\b');
+                    case 'f' -> string.append('\f');
+                    case 'n' -> string.append('\n');
+                    case 'r' -> string.append('\r');
+                    case 't' -> string.append('\t');
+                    case 'u' -> {
+                        string.append((char) Integer.parseInt(json.substring(position, position + 4), 16));
+                        position += 4;
+                    }
+                    default -> string.append(escaped);
+                }
+            }
+        }
+
+        private Double number() {
+            int start = position;
+            while (position < json.length() && "+-0123456789.eE".indexOf(json.charAt(position)) >= 0) {
+                position++;
+            }
+            if (start == position) {
+                throw error("Unexpected character '" + json.charAt(position) + "'");
+            }
+            return Double.valueOf(json.substring(start, position));
+        }
+
+        private void expect(char c) {
+            if (position >= json.length() || json.charAt(position) != c) {
+                throw error("Expected '" + c + "'");
+            }
+            position++;
+        }
+
+        private void skipWhitespace() {
+            while (position < json.length() && Character.isWhitespace(json.charAt(position))) {
+                position++;
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + position);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ *  Copyright 2021 Gunnar Morling
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package dev.morling.demos.simdfizzbuzz;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.profile.LinuxPerfAsmProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, reporting the allocation rate of each
+ * kernel, and writes the results as JSON into a directory, from where they can be
+ * compared to earlier runs using {@link BenchmarkComparator}. Usage:
+ *
+ * <pre>
+ * java --add-modules=jdk.incubator.vector,jdk.incubator.foreign -cp target/benchmarks.jar \
+ *     dev.morling.demos.simdfizzbuzz.BenchmarkSuite [--results-dir &lt;dir&gt;] [--perfasm] [JMH options]
+ * </pre>
+ *
+ * Without a benchmark pattern among the JMH options, {@link FizzBuzzSweepBenchmark}
+ * is run. {@code --perfasm} adds the perfasm profiler, which needs Linux
+ * {@code perf} and the hsdis disassembler, for inspecting the hot loops.
+ */
+public class BenchmarkSuite {
+
+    private static final String DEFAULT_RESULTS_DIR = "benchmark-results";
+
+    public static void main(String[] args) throws Exception {
+        Path resultsDir = Path.of(DEFAULT_RESULTS_DIR);
+        boolean perfAsm = false;
+        List<String> jmhArgs = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--results-dir" -> resultsDir = Path.of(args[++i]);
+                case "--perfasm" -> perfAsm = true;
+                default -> jmhArgs.add(args[i]);
+            }
+        }
+
+        CommandLineOptions commandLine = new CommandLineOptions(jmhArgs.toArray(String[]::new));
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON);
+
+        if (commandLine.getIncludes().isEmpty()) {
+            options.include(FizzBuzzSweepBenchmark.class.getSimpleName());
+        }
+        if (perfAsm) {
+            options.addProfiler(LinuxPerfAsmProfiler.class);
+        }
+
+        Files.createDirectories(resultsDir);
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        Path result = resultsDir.resolve("jmh-" + timestamp + ".json");
+        options.result(result.toString());
+
+        new Runner(options.build()).run();
+
+        System.out.println("Results written to " + result);
+    }
+}
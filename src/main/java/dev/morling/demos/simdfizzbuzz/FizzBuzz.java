@@ -15,29 +15,88 @@
  */
 package dev.morling.demos.simdfizzbuzz;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
 import jdk.incubator.vector.IntVector;
 import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
 import jdk.incubator.vector.VectorSpecies;
 
+/**
+ * The FizzBuzz kernels. Instances are immutable and thread-safe, so a single one can
+ * be shared by all threads; the tables of the kernels not depending on the species
+ * passed to the constructor are static and built only once.
+ */
 public class FizzBuzz {
 
     private static final int FIZZ = -1;
     private static final int BUZZ = -2;
     private static final int FIZZ_BUZZ = -3;
 
+    // modular inverses of 3 and 5 (mod 2^32) and the largest quotients by 3 and 5 an
+    // unsigned int can have; x is divisible by d if and only if x * inverse(d), taken
+    // as unsigned, doesn't exceed that quotient
+    static final int INVERSE_3 = 0xAAAAAAAB;
+    static final int INVERSE_5 = 0xCCCCCCCD;
+    static final int MAX_QUOTIENT_3 = 0x55555555;
+    static final int MAX_QUOTIENT_5 = 0x33333333;
+
     private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_256;
 
-    private final VectorMask[] resultMasksArray = new VectorMask[15];
-    private final List<VectorMask<Integer>> resultMasks = new ArrayList<>(15);
-    private final IntVector[] resultValues = new IntVector[15];
+    // the summary kernels add up the lower and upper 16 bits of the values in separate
+    // int lanes; for up to 2^15 elements, neither sum can overflow across all lanes
+    private static final int SUM_BLOCK_LENGTH = 1 << 15;
+
+    // lcm(15, 8), the elements processed per iteration of simdFizzBuzzUnrolled256(),
+    // whose loop body is written out for the 8 lanes of SPECIES
+    private static final int SUPER_BLOCK_LENGTH = 15 * 8;
+
+    // the tables of the kernels using SPECIES; built once, so that all instances share
+    // them and the JIT compiler can treat them as constants
+    private static final VectorMask[] RESULT_MASKS_ARRAY = new VectorMask[15];
+    private static final List<VectorMask<Integer>> RESULT_MASKS;
+    private static final IntVector[] RESULT_VALUES = new IntVector[15];
+
+    static {
+        List<VectorMask<Integer>> threeMasks = Arrays.asList(
+                VectorMask.<Integer>fromLong(SPECIES, 0b00100100),
+                VectorMask.<Integer>fromLong(SPECIES, 0b01001001),
+                VectorMask.<Integer>fromLong(SPECIES, 0b10010010)
+                );
+
+        List<VectorMask<Integer>> fiveMasks = Arrays.asList(
+                VectorMask.<Integer>fromLong(SPECIES, 0b00010000),
+                VectorMask.<Integer>fromLong(SPECIES, 0b01000010),
+                VectorMask.<Integer>fromLong(SPECIES, 0b00001000),
+                VectorMask.<Integer>fromLong(SPECIES, 0b00100001),
+                VectorMask.<Integer>fromLong(SPECIES, 0b10000100)
+                );
+
+        List<VectorMask<Integer>> resultMasks = new ArrayList<>(15);
 
-    private int[] serialMask = new int[] {0, 0, -1, 0, -2,
-                                          -1, 0, 0, -1, -2,
-                                          0, -1, 0, 0, -3};
+        for(int i = 0; i < 15; i++) {
+            VectorMask<Integer> tm = threeMasks.get(i%3);
+            VectorMask<Integer> fm = fiveMasks.get(i%5);
+
+            RESULT_MASKS_ARRAY[i] = tm.or(fm);
+            resultMasks.add(tm.or(fm));
+            RESULT_VALUES[i] = IntVector.zero(SPECIES).blend(FIZZ, tm).blend(BUZZ, fm).blend(FIZZ_BUZZ, tm.and(fm));
+        }
+
+        RESULT_MASKS = List.copyOf(resultMasks);
+    }
+
+    private static final int[] SERIAL_MASK = new int[] {0, 0, -1, 0, -2,
+                                                        -1, 0, 0, -1, -2,
+                                                        0, -1, 0, 0, -3};
+
+    private final VectorSpecies<Integer> species;
+    private final VectorMask[] speciesMasks;
+    private final IntVector[] speciesValues;
 
     private static final boolean[] multiplesOf3 = {
             false, false, true,
@@ -57,60 +116,175 @@ public class FizzBuzz {
             false
     };
 
+    // the masks of simdFizzBuzz256() and simdFizzBuzz128(), each covering one part of
+    // the 15-element period; static final, so they are constants for the JIT compiler
+    private static final VectorMask<Integer> FIZZ_MASK_256_FIRST = VectorMask.fromArray(IntVector.SPECIES_256, multiplesOf3, 0);
+    private static final VectorMask<Integer> BUZZ_MASK_256_FIRST = VectorMask.fromArray(IntVector.SPECIES_256, multiplesOf5, 0);
+    private static final VectorMask<Integer> FIZZ_BUZZ_MASK_256_FIRST = FIZZ_MASK_256_FIRST.and(BUZZ_MASK_256_FIRST);
+
+    private static final VectorMask<Integer> FIZZ_MASK_256_SECOND = VectorMask.fromArray(IntVector.SPECIES_256, multiplesOf3, 8);
+    private static final VectorMask<Integer> BUZZ_MASK_256_SECOND = VectorMask.fromArray(IntVector.SPECIES_256, multiplesOf5, 8);
+    private static final VectorMask<Integer> FIZZ_BUZZ_MASK_256_SECOND = FIZZ_MASK_256_SECOND.and(BUZZ_MASK_256_SECOND);
+
+    private static final VectorMask<Integer> EXCLUDE_LAST_256 = IntVector.SPECIES_256.indexInRange(0, 7);
+
+    private static final VectorMask<Integer> FIZZ_MASK_128_FIRST = VectorMask.fromArray(IntVector.SPECIES_128, multiplesOf3, 0);
+    private static final VectorMask<Integer> BUZZ_MASK_128_FIRST = VectorMask.fromArray(IntVector.SPECIES_128, multiplesOf5, 0);
+    private static final VectorMask<Integer> FIZZ_BUZZ_MASK_128_FIRST = FIZZ_MASK_128_FIRST.and(BUZZ_MASK_128_FIRST);
+
+    private static final VectorMask<Integer> FIZZ_MASK_128_SECOND = VectorMask.fromArray(IntVector.SPECIES_128, multiplesOf3, 4);
+    private static final VectorMask<Integer> BUZZ_MASK_128_SECOND = VectorMask.fromArray(IntVector.SPECIES_128, multiplesOf5, 4);
+    private static final VectorMask<Integer> FIZZ_BUZZ_MASK_128_SECOND = FIZZ_MASK_128_SECOND.and(BUZZ_MASK_128_SECOND);
+
+    private static final VectorMask<Integer> FIZZ_MASK_128_THIRD = VectorMask.fromArray(IntVector.SPECIES_128, multiplesOf3, 8);
+    private static final VectorMask<Integer> BUZZ_MASK_128_THIRD = VectorMask.fromArray(IntVector.SPECIES_128, multiplesOf5, 8);
+    private static final VectorMask<Integer> FIZZ_BUZZ_MASK_128_THIRD = FIZZ_MASK_128_THIRD.and(BUZZ_MASK_128_THIRD);
+
+    private static final VectorMask<Integer> FIZZ_MASK_128_FOURTH = VectorMask.fromArray(IntVector.SPECIES_128, multiplesOf3, 12);
+    private static final VectorMask<Integer> BUZZ_MASK_128_FOURTH = VectorMask.fromArray(IntVector.SPECIES_128, multiplesOf5, 12);
+    private static final VectorMask<Integer> FIZZ_BUZZ_MASK_128_FOURTH = FIZZ_MASK_128_FOURTH.and(BUZZ_MASK_128_FOURTH);
+
+    private static final VectorMask<Integer> EXCLUDE_LAST_128 = IntVector.SPECIES_128.indexInRange(0, 3);
+
     public FizzBuzz() {
-        List<VectorMask<Integer>> threeMasks = Arrays.asList(
-                VectorMask.<Integer>fromLong(SPECIES, 0b00100100),
-                VectorMask.<Integer>fromLong(SPECIES, 0b01001001),
-                VectorMask.<Integer>fromLong(SPECIES, 0b10010010)
-                );
+        this(IntVector.SPECIES_PREFERRED);
+    }
 
-        List<VectorMask<Integer>> fiveMasks = Arrays.asList(
-                VectorMask.<Integer>fromLong(SPECIES, 0b00010000),
-                VectorMask.<Integer>fromLong(SPECIES, 0b01000010),
-                VectorMask.<Integer>fromLong(SPECIES, 0b00001000),
-                VectorMask.<Integer>fromLong(SPECIES, 0b00100001),
-                VectorMask.<Integer>fromLong(SPECIES, 0b10000100)
-                );
+    /**
+     * Creates a new instance whose {@link #simdFizzBuzzAnySpecies(int[])} kernel
+     * operates on vectors of the given species; all other kernels are unaffected.
+     */
+    public FizzBuzz(VectorSpecies<Integer> species) {
+        // the mask pattern repeats after lcm(15, lanes) elements, i.e. after that many
+        // elements divided by lanes vectors
+        int lanes = species.length();
+        int tableLength = lcm(15, lanes) / lanes;
+
+        this.species = species;
+        this.speciesMasks = new VectorMask[tableLength];
+        this.speciesValues = new IntVector[tableLength];
+
+        boolean[] fizz = new boolean[lanes];
+        boolean[] buzz = new boolean[lanes];
+
+        for (int i = 0; i < tableLength; i++) {
+            for (int lane = 0; lane < lanes; lane++) {
+                int value = i * lanes + lane + 1;
+                fizz[lane] = value % 3 == 0;
+                buzz[lane] = value % 5 == 0;
+            }
 
-        for(int i = 0; i < 15; i++) {
-            VectorMask<Integer> tm = threeMasks.get(i%3);
-            VectorMask<Integer> fm = fiveMasks.get(i%5);
+            VectorMask<Integer> tm = VectorMask.fromArray(species, fizz, 0);
+            VectorMask<Integer> fm = VectorMask.fromArray(species, buzz, 0);
 
-            resultMasksArray[i] = tm.or(fm);
-            resultMasks.add(tm.or(fm));
-            resultValues[i] = IntVector.zero(SPECIES).blend(FIZZ, tm).blend(BUZZ, fm).blend(FIZZ_BUZZ, tm.and(fm));
+            speciesMasks[i] = tm.or(fm);
+            speciesValues[i] = IntVector.zero(species).blend(FIZZ, tm).blend(BUZZ, fm).blend(FIZZ_BUZZ, tm.and(fm));
+        }
+    }
+
+    /**
+     * Returns the number of elements after which the masks used by
+     * {@link #simdFizzBuzzAnySpecies(int[])} repeat, i.e. lcm(15, lanes).
+     */
+    int period() {
+        return speciesMasks.length * species.length();
+    }
+
+    /**
+     * Returns the species used by {@link #simdFizzBuzzAnySpecies(int[])} and the
+     * other kernels not bound to a fixed vector size.
+     */
+    VectorSpecies<Integer> species() {
+        return species;
+    }
+
+    /**
+     * Returns the least common multiple of the given positive numbers.
+     */
+    static int lcm(int a, int b) {
+        return (int) (a / gcd(a, b)) * b;
+    }
+
+    /**
+     * Returns the least common multiple of the given positive numbers, or
+     * {@link Long#MAX_VALUE} if it exceeds the long value space.
+     */
+    static long saturatedLcm(long a, long b) {
+        long factor = a / gcd(a, b);
+        return factor > Long.MAX_VALUE / b ? Long.MAX_VALUE : factor * b;
+    }
+
+    private static long gcd(long a, long b) {
+        long x = a;
+        long y = b;
+        while (y != 0) {
+            long t = x % y;
+            x = y;
+            y = t;
         }
+        return x;
     }
 
     public int[] serialFizzBuzz(int[] values) {
         int[] result = new int[values.length];
+        serialFizzBuzz(values, 0, result, 0, values.length);
+        return result;
+    }
 
-        for (int i = 0; i < values.length; i++) {
-            int value = values[i];
+    /**
+     * Writes the FizzBuzz results for {@code len} elements of {@code src}, starting
+     * at {@code srcOff}, into {@code dst}, starting at {@code dstOff}. {@code src} and
+     * {@code dst} may be the same array for in-place processing, as long as both
+     * offsets are the same. The same contract applies to all other overloads taking
+     * a destination array; the mask-based ones expect the element at {@code srcOff}
+     * to be at position 0 of the 15-element FizzBuzz period, just like index 0 is for
+     * the allocating variants.
+     */
+    public void serialFizzBuzz(int[] src, int srcOff, int[] dst, int dstOff, int len) {
+        scalarFizzBuzz(src, srcOff, dst, dstOff, len);
+    }
+
+    /**
+     * Used for the tails of the SIMD kernels, so that these don't go through the
+     * overridable {@link #serialFizzBuzz(int[], int, int[], int, int)}.
+     */
+    private static void scalarFizzBuzz(int[] src, int srcOff, int[] dst, int dstOff, int len) {
+        for (int i = 0; i < len; i++) {
+            int value = src[srcOff + i];
             if (value % 3 == 0) {
                 if (value % 5 == 0) {
-                    result[i] = FIZZ_BUZZ;
+                    dst[dstOff + i] = FIZZ_BUZZ;
                 }
                 else {
-                    result[i] = FIZZ;
+                    dst[dstOff + i] = FIZZ;
                 }
             }
             else if (value % 5 == 0) {
-                result[i] = BUZZ;
+                dst[dstOff + i] = BUZZ;
             }
             else {
-                result[i] = value;
+                dst[dstOff + i] = value;
             }
         }
+    }
 
-        return result;
+    private static int fizzBuzz(int value) {
+        if (value % 3 == 0) {
+            return value % 5 == 0 ? FIZZ_BUZZ : FIZZ;
+        }
+        else if (value % 5 == 0) {
+            return BUZZ;
+        }
+        else {
+            return value;
+        }
     }
 
-    private void scalarFizzBuzzHelper(int[] values, int startIndex, int[] result) {
+    private static void scalarFizzBuzzHelper(int[] src, int srcOff, int[] dst, int dstOff, int len) {
         int j = 0;
-        for (int i = startIndex; i < values.length; i++) {
-            int res = serialMask[j];
-            result[i] = res == 0 ? values[i] : res;
+        for (int i = 0; i < len; i++) {
+            int res = SERIAL_MASK[j];
+            dst[dstOff + i] = res == 0 ? src[srcOff + i] : res;
 
             j++;
             if (j == 15) {
@@ -121,245 +295,626 @@ public class FizzBuzz {
 
     public int[] serialFizzBuzzMasked(int[] values) {
         int[] result = new int[values.length];
-        scalarFizzBuzzHelper(values, 0, result);
+        serialFizzBuzzMasked(values, 0, result, 0, values.length);
         return result;
     }
 
+    public void serialFizzBuzzMasked(int[] src, int srcOff, int[] dst, int dstOff, int len) {
+        scalarFizzBuzzHelper(src, srcOff, dst, dstOff, len);
+    }
+
     public int[] simdFizzBuzz(int[] values) {
         int[] result = new int[values.length];
+        simdFizzBuzz(values, 0, result, 0, values.length);
+        return result;
+    }
+
+    public void simdFizzBuzz(int[] src, int srcOff, int[] dst, int dstOff, int len) {
         int i = 0;
-        int upperBound = SPECIES.loopBound(values.length);
+        int upperBound = SPECIES.loopBound(len);
 
         for (; i < upperBound; i += SPECIES.length()) {
-            var va = IntVector.fromArray(SPECIES, values, i);
+            var va = IntVector.fromArray(SPECIES, src, srcOff + i);
             int maskIdx = (i/8)%15;
-            var fizzbuzz = va.blend(resultValues[maskIdx], resultMasks.get(maskIdx));
-            fizzbuzz.intoArray(result, i);
-        }
-
-        for (; i < values.length; i++) {
-            int value = values[i];
-            if (value % 3 == 0) {
-                if (value % 5 == 0) {
-                    result[i] = FIZZ_BUZZ;
-                }
-                else {
-                    result[i] = FIZZ;
-                }
-            }
-            else if (value % 5 == 0) {
-                result[i] = BUZZ;
-            }
-            else {
-                result[i] = value;
-            }
+            var fizzbuzz = va.blend(RESULT_VALUES[maskIdx], RESULT_MASKS.get(maskIdx));
+            fizzbuzz.intoArray(dst, dstOff + i);
         }
 
-        return result;
+        scalarFizzBuzz(src, srcOff + i, dst, dstOff + i, len - i);
     }
 
     public int[] simdFizzBuzzMasksInArray(int[] values) {
         int[] result = new int[values.length];
+        simdFizzBuzzMasksInArray(values, 0, result, 0, values.length);
+        return result;
+    }
+
+    public void simdFizzBuzzMasksInArray(int[] src, int srcOff, int[] dst, int dstOff, int len) {
         int i = 0;
-        int upperBound = SPECIES.loopBound(values.length);
+        int upperBound = SPECIES.loopBound(len);
 
         for (; i < upperBound; i += SPECIES.length()) {
-            var va = IntVector.fromArray(SPECIES, values, i);
+            var va = IntVector.fromArray(SPECIES, src, srcOff + i);
             int maskIdx = (i/8)%15;
-            var fizzbuzz = va.blend(resultValues[maskIdx], resultMasksArray[maskIdx]);
-            fizzbuzz.intoArray(result, i);
+            var fizzbuzz = va.blend(RESULT_VALUES[maskIdx], RESULT_MASKS_ARRAY[maskIdx]);
+            fizzbuzz.intoArray(dst, dstOff + i);
         }
 
-        for (; i < values.length; i++) {
-            int value = values[i];
-            if (value % 3 == 0) {
-                if (value % 5 == 0) {
-                    result[i] = FIZZ_BUZZ;
-                }
-                else {
-                    result[i] = FIZZ;
-                }
-            }
-            else if (value % 5 == 0) {
-                result[i] = BUZZ;
-            }
-            else {
-                result[i] = value;
-            }
-        }
-
-        return result;
+        scalarFizzBuzz(src, srcOff + i, dst, dstOff + i, len - i);
     }
 
     public int[] simdFizzBuzzSeparateMaskIndex(int[] values) {
         int[] result = new int[values.length];
+        simdFizzBuzzSeparateMaskIndex(values, 0, result, 0, values.length);
+        return result;
+    }
+
+    public void simdFizzBuzzSeparateMaskIndex(int[] src, int srcOff, int[] dst, int dstOff, int len) {
         int i = 0;
         int j = 0;
 
-        int upperBound = SPECIES.loopBound(values.length);
+        int upperBound = SPECIES.loopBound(len);
         for (; i < upperBound; i += SPECIES.length()) {
-            var va = IntVector.fromArray(SPECIES, values, i);
-            var fizzbuzz = va.blend(resultValues[j], resultMasksArray[j]);
-            fizzbuzz.intoArray(result, i);
+            var va = IntVector.fromArray(SPECIES, src, srcOff + i);
+            var fizzbuzz = va.blend(RESULT_VALUES[j], RESULT_MASKS_ARRAY[j]);
+            fizzbuzz.intoArray(dst, dstOff + i);
             j++;
             if (j == 15) {
                 j = 0;
             }
         }
 
-        for (; i < values.length; i++) {
-            int value = values[i];
-            if (value % 3 == 0) {
-                if (value % 5 == 0) {
-                    result[i] = FIZZ_BUZZ;
-                }
-                else {
-                    result[i] = FIZZ;
-                }
-            }
-            else if (value % 5 == 0) {
-                result[i] = BUZZ;
-            }
-            else {
-                result[i] = value;
+        scalarFizzBuzz(src, srcOff + i, dst, dstOff + i, len - i);
+    }
+
+    /**
+     * Variant of {@link #simdFizzBuzzSeparateMaskIndex(int[], int, int[], int, int)}
+     * for (typically direct) byte buffers. Offsets and length are given in ints; the
+     * buffers' byte orders are applied and they don't need to be aligned.
+     */
+    public void simdFizzBuzzSeparateMaskIndex(ByteBuffer src, int srcOff, ByteBuffer dst, int dstOff, int len) {
+        ByteOrder srcOrder = src.order();
+        ByteOrder dstOrder = dst.order();
+        int i = 0;
+        int j = 0;
+
+        int upperBound = SPECIES.loopBound(len);
+        for (; i < upperBound; i += SPECIES.length()) {
+            var va = IntVector.fromByteBuffer(SPECIES, src, (srcOff + i) * Integer.BYTES, srcOrder);
+            var fizzbuzz = va.blend(RESULT_VALUES[j], RESULT_MASKS_ARRAY[j]);
+            fizzbuzz.intoByteBuffer(dst, (dstOff + i) * Integer.BYTES, dstOrder);
+            j++;
+            if (j == 15) {
+                j = 0;
             }
         }
 
-        return result;
+        for (; i < len; i++) {
+            dst.putInt((dstOff + i) * Integer.BYTES, fizzBuzz(src.getInt((srcOff + i) * Integer.BYTES)));
+        }
     }
 
     public int[] simdFizzBuzzMasked(int[] values) {
         int[] result = new int[values.length];
+        simdFizzBuzzMasked(values, 0, result, 0, values.length);
+        return result;
+    }
+
+    public void simdFizzBuzzMasked(int[] src, int srcOff, int[] dst, int dstOff, int len) {
         int j = 0;
 
-        for (int i = 0; i < values.length; i += SPECIES.length()) {
-            var mask = SPECIES.indexInRange(i, values.length);
-            var chunk = IntVector.fromArray(SPECIES, values, i, mask);
-            var fizzBuzz = chunk.blend(resultValues[j], resultMasks.get(j));
-            fizzBuzz.intoArray(result, i, mask);
+        for (int i = 0; i < len; i += SPECIES.length()) {
+            var mask = SPECIES.indexInRange(i, len);
+            var chunk = IntVector.fromArray(SPECIES, src, srcOff + i, mask);
+            var fizzBuzz = chunk.blend(RESULT_VALUES[j], RESULT_MASKS.get(j));
+            fizzBuzz.intoArray(dst, dstOff + i, mask);
 
             j++;
             if (j == 15) {
                 j = 0;
             }
         }
+    }
+
+    /**
+     * Variant of {@link #simdFizzBuzzMasked(int[], int, int[], int, int)} for
+     * (typically direct) byte buffers. Offsets and length are given in ints; the
+     * buffers' byte orders are applied and they don't need to be aligned.
+     */
+    public void simdFizzBuzzMasked(ByteBuffer src, int srcOff, ByteBuffer dst, int dstOff, int len) {
+        ByteOrder srcOrder = src.order();
+        ByteOrder dstOrder = dst.order();
+        int j = 0;
 
+        for (int i = 0; i < len; i += SPECIES.length()) {
+            var mask = SPECIES.indexInRange(i, len);
+            var chunk = IntVector.fromByteBuffer(SPECIES, src, (srcOff + i) * Integer.BYTES, srcOrder, mask);
+            var fizzBuzz = chunk.blend(RESULT_VALUES[j], RESULT_MASKS.get(j));
+            fizzBuzz.intoByteBuffer(dst, (dstOff + i) * Integer.BYTES, dstOrder, mask);
+
+            j++;
+            if (j == 15) {
+                j = 0;
+            }
+        }
+    }
+
+    public int[] simdFizzBuzzUnrolled256(int[] values) {
+        int[] result = new int[values.length];
+        simdFizzBuzzUnrolled256(values, 0, result, 0, values.length);
         return result;
     }
 
-    public int[] simdFizzBuzzPreferred(int[] values) {
-        // The rationale here is to test whether Vector size dependent
-        // algorithms can be optimized or not. The FizzBuzz problem can
-        // be solved without it, but I presume there are simd problems that
-        // involve vector size dependent masks or shuffles so on. So, a library
-        // could provide optimal implementation for various vector sizes and
-        // at runtime the intended implementation would be chosen as per the
-        // registers available. Piggybacking on the JIT to optimize away this
-        // check because static finals are being compared. Won't work with just
-        // final's, which is probably fine because for a given run the machine's
-        // preferred vector size will be fixed.
-        if(SPECIES == IntVector.SPECIES_256)
-            return simdFizzBuzz256(values);
-        else
-            return simdFizzBuzz128(values);
+    /**
+     * Processes one super-block of lcm(15, 8) = 120 elements, i.e. 15 vectors, per
+     * iteration, so each vector's mask and values are fixed rather than looked up
+     * via a mask index. All 15 masks and value vectors are loaded into locals upfront,
+     * allowing the JIT to keep them in registers. Elements after the last complete
+     * super-block are processed with masked loads and stores.
+     * <p>
+     * The unrolled loop is written for 256-bit vectors of eight lanes and always uses
+     * {@link IntVector#SPECIES_256}, regardless of the species of this instance; on
+     * hardware without 256-bit vectors, use {@link #simdFizzBuzzAnySpecies(int[], int, int[], int, int)}.
+     */
+    @SuppressWarnings("unchecked")
+    public void simdFizzBuzzUnrolled256(int[] src, int srcOff, int[] dst, int dstOff, int len) {
+        VectorMask<Integer> m0 = RESULT_MASKS_ARRAY[0];
+        VectorMask<Integer> m1 = RESULT_MASKS_ARRAY[1];
+        VectorMask<Integer> m2 = RESULT_MASKS_ARRAY[2];
+        VectorMask<Integer> m3 = RESULT_MASKS_ARRAY[3];
+        VectorMask<Integer> m4 = RESULT_MASKS_ARRAY[4];
+        VectorMask<Integer> m5 = RESULT_MASKS_ARRAY[5];
+        VectorMask<Integer> m6 = RESULT_MASKS_ARRAY[6];
+        VectorMask<Integer> m7 = RESULT_MASKS_ARRAY[7];
+        VectorMask<Integer> m8 = RESULT_MASKS_ARRAY[8];
+        VectorMask<Integer> m9 = RESULT_MASKS_ARRAY[9];
+        VectorMask<Integer> m10 = RESULT_MASKS_ARRAY[10];
+        VectorMask<Integer> m11 = RESULT_MASKS_ARRAY[11];
+        VectorMask<Integer> m12 = RESULT_MASKS_ARRAY[12];
+        VectorMask<Integer> m13 = RESULT_MASKS_ARRAY[13];
+        VectorMask<Integer> m14 = RESULT_MASKS_ARRAY[14];
+
+        IntVector v0 = RESULT_VALUES[0];
+        IntVector v1 = RESULT_VALUES[1];
+        IntVector v2 = RESULT_VALUES[2];
+        IntVector v3 = RESULT_VALUES[3];
+        IntVector v4 = RESULT_VALUES[4];
+        IntVector v5 = RESULT_VALUES[5];
+        IntVector v6 = RESULT_VALUES[6];
+        IntVector v7 = RESULT_VALUES[7];
+        IntVector v8 = RESULT_VALUES[8];
+        IntVector v9 = RESULT_VALUES[9];
+        IntVector v10 = RESULT_VALUES[10];
+        IntVector v11 = RESULT_VALUES[11];
+        IntVector v12 = RESULT_VALUES[12];
+        IntVector v13 = RESULT_VALUES[13];
+        IntVector v14 = RESULT_VALUES[14];
+
+        int i = 0;
+        int upperBound = len - len % SUPER_BLOCK_LENGTH;
+
+        for (; i < upperBound; i += SUPER_BLOCK_LENGTH) {
+            int s = srcOff + i;
+            int d = dstOff + i;
+            IntVector.fromArray(SPECIES, src, s).blend(v0, m0).intoArray(dst, d);
+            IntVector.fromArray(SPECIES, src, s + 8).blend(v1, m1).intoArray(dst, d + 8);
+            IntVector.fromArray(SPECIES, src, s + 16).blend(v2, m2).intoArray(dst, d + 16);
+            IntVector.fromArray(SPECIES, src, s + 24).blend(v3, m3).intoArray(dst, d + 24);
+            IntVector.fromArray(SPECIES, src, s + 32).blend(v4, m4).intoArray(dst, d + 32);
+            IntVector.fromArray(SPECIES, src, s + 40).blend(v5, m5).intoArray(dst, d + 40);
+            IntVector.fromArray(SPECIES, src, s + 48).blend(v6, m6).intoArray(dst, d + 48);
+            IntVector.fromArray(SPECIES, src, s + 56).blend(v7, m7).intoArray(dst, d + 56);
+            IntVector.fromArray(SPECIES, src, s + 64).blend(v8, m8).intoArray(dst, d + 64);
+            IntVector.fromArray(SPECIES, src, s + 72).blend(v9, m9).intoArray(dst, d + 72);
+            IntVector.fromArray(SPECIES, src, s + 80).blend(v10, m10).intoArray(dst, d + 80);
+            IntVector.fromArray(SPECIES, src, s + 88).blend(v11, m11).intoArray(dst, d + 88);
+            IntVector.fromArray(SPECIES, src, s + 96).blend(v12, m12).intoArray(dst, d + 96);
+            IntVector.fromArray(SPECIES, src, s + 104).blend(v13, m13).intoArray(dst, d + 104);
+            IntVector.fromArray(SPECIES, src, s + 112).blend(v14, m14).intoArray(dst, d + 112);
+        }
+
+        for (int j = 0; i < len; i += SPECIES.length(), j++) {
+            var mask = SPECIES.indexInRange(i, len);
+            IntVector.fromArray(SPECIES, src, srcOff + i, mask)
+                    .blend(RESULT_VALUES[j], RESULT_MASKS_ARRAY[j])
+                    .intoArray(dst, dstOff + i, mask);
+        }
     }
 
-    public int[] simdFizzBuzz256(int[] values) {
+    public int[] simdFizzBuzzAnySpecies(int[] values) {
         int[] result = new int[values.length];
-        final int offset = IntVector.SPECIES_256.length();
+        simdFizzBuzzAnySpecies(values, 0, result, 0, values.length);
+        return result;
+    }
 
-        VectorMask<Integer> fizzMaskFirst = VectorMask.fromArray(IntVector.SPECIES_256, multiplesOf3, 0);
-        VectorMask<Integer> buzzMaskFirst = VectorMask.fromArray(IntVector.SPECIES_256, multiplesOf5, 0);
-        VectorMask<Integer> fizzBuzzMaskFirst = fizzMaskFirst.and(buzzMaskFirst);
+    public void simdFizzBuzzAnySpecies(int[] src, int srcOff, int[] dst, int dstOff, int len) {
+        int i = 0;
+        int j = 0;
 
-        VectorMask<Integer> fizzMaskSecond = VectorMask.fromArray(IntVector.SPECIES_256, multiplesOf3, offset);
-        VectorMask<Integer> buzzMaskSecond = VectorMask.fromArray(IntVector.SPECIES_256, multiplesOf5, offset);
-        VectorMask<Integer> fizzBuzzMaskSecond = fizzMaskSecond.and(buzzMaskSecond);
+        int upperBound = species.loopBound(len);
+        for (; i < upperBound; i += species.length()) {
+            var va = IntVector.fromArray(species, src, srcOff + i);
+            var fizzbuzz = va.blend(speciesValues[j], speciesMasks[j]);
+            fizzbuzz.intoArray(dst, dstOff + i);
+            j++;
+            if (j == speciesMasks.length) {
+                j = 0;
+            }
+        }
 
-        final boolean[] excludeLast = {true, true, true, true, true, true, true, false};
-        VectorMask<Integer> excludeLastElement = VectorMask.fromArray(IntVector.SPECIES_256, excludeLast, 0);
+        scalarFizzBuzz(src, srcOff + i, dst, dstOff + i, len - i);
+    }
 
-        int upperBound = values.length / 15;
-        int index = 0;
-        for (int j = 0; j < upperBound; j++) {
-            IntVector vectorFirst = IntVector.fromArray(IntVector.SPECIES_256, values, index);
-            vectorFirst.blend(FIZZ, fizzMaskFirst)
-                    .blend(BUZZ, buzzMaskFirst)
-                    .blend(FIZZ_BUZZ, fizzBuzzMaskFirst)
-                    .intoArray(result, index);
-            index += offset;
+    /**
+     * Unlike the other SIMD kernels, which derive the FizzBuzz masks from the position
+     * within the array, this one tests each value itself for divisibility, so it returns
+     * correct results for arbitrary input, e.g. non-sequential, negative values or 0.
+     */
+    public int[] simdFizzBuzzByValue(int[] values) {
+        int[] result = new int[values.length];
+        simdFizzBuzzByValue(values, 0, result, 0, values.length);
+        return result;
+    }
 
-            IntVector vectorSecond = IntVector.fromArray(IntVector.SPECIES_256, values, index, excludeLastElement);
-            vectorSecond.blend(FIZZ, fizzMaskSecond)
-                    .blend(BUZZ, buzzMaskSecond)
-                    .blend(FIZZ_BUZZ, fizzBuzzMaskSecond)
-                    .intoArray(result, index, excludeLastElement);
-            index += offset - 1;
+    public void simdFizzBuzzByValue(int[] src, int srcOff, int[] dst, int dstOff, int len) {
+        int i = 0;
+
+        int upperBound = species.loopBound(len);
+        for (; i < upperBound; i += species.length()) {
+            var va = IntVector.fromArray(species, src, srcOff + i);
+            // |Integer.MIN_VALUE| stays 2^31 when taken as unsigned, which is divisible by neither 3 nor 5
+            var abs = va.abs();
+            var fizz = abs.mul(INVERSE_3).compare(VectorOperators.UNSIGNED_LE, MAX_QUOTIENT_3);
+            var buzz = abs.mul(INVERSE_5).compare(VectorOperators.UNSIGNED_LE, MAX_QUOTIENT_5);
+            va.blend(FIZZ, fizz)
+                    .blend(BUZZ, buzz)
+                    .blend(FIZZ_BUZZ, fizz.and(buzz))
+                    .intoArray(dst, dstOff + i);
         }
 
-        scalarFizzBuzzHelper(values, index, result);
+        scalarFizzBuzz(src, srcOff + i, dst, dstOff + i, len - i);
+    }
+
+    /**
+     * Writes the FizzBuzz results for the values {@code [start, start + count)} into
+     * {@code dst}, without requiring an input array. The values are generated within
+     * vector registers, so only the result is written to memory.
+     */
+    public void fizzBuzzRange(long start, int count, int[] dst) {
+        fizzBuzzRange(start, count, dst, 0);
+    }
+
+    public void fizzBuzzRange(long start, int count, int[] dst, int dstOff) {
+        checkIntRange(start, count);
+
+        int lanes = species.length();
+        int period = speciesMasks.length * lanes;
+
+        // position of start within the mask table, whose first element is for value 1
+        int position = (int) Math.floorMod(start - 1, (long) period);
+
+        // process elements one by one until reaching a vector boundary of the mask table
+        int i = 0;
+        int value = (int) start;
+        int prologue = Math.min(count, (lanes - position % lanes) % lanes);
+        for (; i < prologue; i++) {
+            dst[dstOff + i] = fizzBuzz(value++);
+        }
+
+        int j = ((position + prologue) / lanes) % speciesMasks.length;
+        var values = IntVector.zero(species).addIndex(1).add(value);
+        int upperBound = i + species.loopBound(count - i);
+
+        for (; i < upperBound; i += lanes) {
+            values.blend(speciesValues[j], speciesMasks[j]).intoArray(dst, dstOff + i);
+            values = values.add(lanes);
+            j++;
+            if (j == speciesMasks.length) {
+                j = 0;
+            }
+        }
+
+        value = (int) (start + i);
+        for (; i < count; i++) {
+            dst[dstOff + i] = fizzBuzz(value++);
+        }
+    }
+
+    /**
+     * Aggregates of FizzBuzz results: the number of Fizz, Buzz and FizzBuzz elements,
+     * and the number and sum of the remaining plain numbers.
+     */
+    public record Summary(long fizz, long buzz, long fizzBuzz, long numbers, long numberSum) {
+    }
+
+    /**
+     * Returns the summary of the FizzBuzz results for {@code len} elements of
+     * {@code src}, starting at {@code srcOff}, without materializing the results. As
+     * with {@link #simdFizzBuzzSeparateMaskIndex(int[], int, int[], int, int)}, the
+     * element at {@code srcOff} is expected to be at position 0 of the FizzBuzz period,
+     * so the Fizz, Buzz and FizzBuzz counts only depend on {@code len} and are
+     * determined in closed form; the plain numbers are summed from the lanes not
+     * selected by the result masks.
+     */
+    public Summary simdFizzBuzzSummary(int[] src, int srcOff, int len) {
+        long sum = 0;
+        int i = 0;
+        int j = 0;
+
+        int upperBound = SPECIES.loopBound(len);
+        while (i < upperBound) {
+            int blockBound = Math.min(upperBound, i + SUM_BLOCK_LENGTH);
+            var low = IntVector.zero(SPECIES);
+            var high = IntVector.zero(SPECIES);
+
+            for (; i < blockBound; i += SPECIES.length()) {
+                var va = IntVector.fromArray(SPECIES, src, srcOff + i);
+                var numbers = RESULT_MASKS_ARRAY[j].not();
+                low = low.add(va.and(0xFFFF), numbers);
+                high = high.add(va.lanewise(VectorOperators.ASHR, 16), numbers);
+                j++;
+                if (j == 15) {
+                    j = 0;
+                }
+            }
+
+            sum += low.reduceLanes(VectorOperators.ADD) + ((long) high.reduceLanes(VectorOperators.ADD) << 16);
+        }
+
+        for (; i < len; i++) {
+            if ((i + 1) % 3 != 0 && (i + 1) % 5 != 0) {
+                sum += src[srcOff + i];
+            }
+        }
+
+        Summary counts = summarizeRange(1, len);
+        return new Summary(counts.fizz(), counts.buzz(), counts.fizzBuzz(), counts.numbers(), sum);
+    }
+
+    /**
+     * Returns the summary of the FizzBuzz results for {@code len} arbitrary values of
+     * {@code src}, starting at {@code srcOff}, without materializing the results.
+     * Divisibility is tested on the values themselves, as done by
+     * {@link #simdFizzBuzzByValue(int[])}, and the bits of the resulting masks are
+     * counted per vector.
+     */
+    public Summary simdFizzBuzzByValueSummary(int[] src, int srcOff, int len) {
+        long fizz = 0;
+        long buzz = 0;
+        long fizzBuzz = 0;
+        long numbers = 0;
+        long sum = 0;
+        int i = 0;
+
+        int upperBound = species.loopBound(len);
+        while (i < upperBound) {
+            int blockBound = Math.min(upperBound, i + SUM_BLOCK_LENGTH);
+            var low = IntVector.zero(species);
+            var high = IntVector.zero(species);
+
+            for (; i < blockBound; i += species.length()) {
+                var va = IntVector.fromArray(species, src, srcOff + i);
+                var abs = va.abs();
+                var fizzMask = abs.mul(INVERSE_3).compare(VectorOperators.UNSIGNED_LE, MAX_QUOTIENT_3);
+                var buzzMask = abs.mul(INVERSE_5).compare(VectorOperators.UNSIGNED_LE, MAX_QUOTIENT_5);
+                var numberMask = fizzMask.or(buzzMask).not();
+
+                fizz += fizzMask.trueCount();
+                buzz += buzzMask.trueCount();
+                fizzBuzz += fizzMask.and(buzzMask).trueCount();
+                numbers += numberMask.trueCount();
+
+                low = low.add(va.and(0xFFFF), numberMask);
+                high = high.add(va.lanewise(VectorOperators.ASHR, 16), numberMask);
+            }
+
+            sum += low.reduceLanes(VectorOperators.ADD) + ((long) high.reduceLanes(VectorOperators.ADD) << 16);
+        }
+
+        for (; i < len; i++) {
+            int value = src[srcOff + i];
+            boolean multipleOf3 = value % 3 == 0;
+            boolean multipleOf5 = value % 5 == 0;
+
+            if (multipleOf3) {
+                fizz++;
+            }
+            if (multipleOf5) {
+                buzz++;
+            }
+            if (multipleOf3 && multipleOf5) {
+                fizzBuzz++;
+            }
+            if (!multipleOf3 && !multipleOf5) {
+                numbers++;
+                sum += value;
+            }
+        }
+
+        // so far, FizzBuzz elements have been counted as Fizz and Buzz too
+        return new Summary(fizz - fizzBuzz, buzz - fizzBuzz, fizzBuzz, numbers, sum);
+    }
+
+    /**
+     * Ensures that {@code count} isn't negative and all values {@code [start, start + count)}
+     * are within the int value space; {@code start + count} itself may overflow.
+     */
+    static void checkIntRange(long start, int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count must not be negative: " + count);
+        }
+        if (start < Integer.MIN_VALUE || start > Integer.MAX_VALUE - (count - 1L)) {
+            throw new IllegalArgumentException("Range starting at " + start + " with " + count + " elements exceeds the int value space");
+        }
+    }
+
+    /**
+     * Returns the summary of the FizzBuzz results for the values
+     * {@code [start, start + count)} in constant time.
+     *
+     * @throws ArithmeticException if the sum of the values in the range exceeds the long value space
+     */
+    public static Summary summarizeRange(long start, long count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count must not be negative: " + count);
+        }
+        if (count == 0) {
+            return new Summary(0, 0, 0, 0, 0);
+        }
+        if (start > Long.MAX_VALUE - (count - 1)) {
+            throw new IllegalArgumentException("Range starting at " + start + " with " + count + " elements exceeds the long value space");
+        }
+
+        long end = start + count - 1;
+        long multiplesOf3 = multiples(3, start, end);
+        long multiplesOf5 = multiples(5, start, end);
+        long multiplesOf15 = multiples(15, start, end);
+
+        // inclusion-exclusion: all values, minus multiples of 3 and 5, plus the multiples of 15 subtracted twice
+        long sum = Math.subtractExact(seriesSum(start, end), Math.multiplyExact(3, multiplesSum(3, start, end)));
+        sum = Math.subtractExact(sum, Math.multiplyExact(5, multiplesSum(5, start, end)));
+        sum = Math.addExact(sum, Math.multiplyExact(15, multiplesSum(15, start, end)));
+
+        return new Summary(
+                multiplesOf3 - multiplesOf15,
+                multiplesOf5 - multiplesOf15,
+                multiplesOf15,
+                count - multiplesOf3 - multiplesOf5 + multiplesOf15,
+                sum);
+    }
+
+    /**
+     * Returns the number of multiples of {@code divisor} within {@code [start, end]}.
+     */
+    private static long multiples(int divisor, long start, long end) {
+        return Math.max(0, Math.floorDiv(end, divisor) - ceilDiv(start, divisor) + 1);
+    }
+
+    /**
+     * Returns the sum of {@code value / divisor} for all multiples of {@code divisor}
+     * within {@code [start, end]}.
+     */
+    private static long multiplesSum(int divisor, long start, long end) {
+        long first = ceilDiv(start, divisor);
+        long last = Math.floorDiv(end, divisor);
+        return first > last ? 0 : seriesSum(first, last);
+    }
+
+    private static long ceilDiv(long value, int divisor) {
+        return Math.floorDiv(value, divisor) + (Math.floorMod(value, divisor) == 0 ? 0 : 1);
+    }
+
+    /**
+     * Returns the sum of all values within {@code [first, last]}.
+     */
+    private static long seriesSum(long first, long last) {
+        long terms = Math.addExact(Math.subtractExact(last, first), 1);
+        long ends = Math.addExact(first, last);
+
+        // exactly one of both factors is even
+        return ends % 2 == 0 ? Math.multiplyExact(ends / 2, terms) : Math.multiplyExact(ends, terms / 2);
+    }
+
+    /**
+     * Runs {@link #simdFizzBuzzAnySpecies(int[])} with {@link IntVector#SPECIES_PREFERRED},
+     * independent of the species this instance has been created for, so that 128, 256
+     * and 512 bit hosts all use their full vector width.
+     */
+    public int[] simdFizzBuzzPreferred(int[] values) {
+        int[] result = new int[values.length];
+        simdFizzBuzzPreferred(values, 0, result, 0, values.length);
         return result;
     }
 
-    int[] simdFizzBuzz128(int[] values) {
+    public void simdFizzBuzzPreferred(int[] src, int srcOff, int[] dst, int dstOff, int len) {
+        // the tables of the static final instance are constants for the JIT
+        PreferredHolder.INSTANCE.simdFizzBuzzAnySpecies(src, srcOff, dst, dstOff, len);
+    }
+
+    /**
+     * Holds the instance for {@link IntVector#SPECIES_PREFERRED}, created upon first
+     * use of {@link #simdFizzBuzzPreferred(int[])}.
+     */
+    private static class PreferredHolder {
+        // The rationale here is to test whether vector size dependent algorithms can
+        // be optimized: a library could provide implementations for various vector
+        // sizes and pick one at runtime as per the registers available. This piggybacks
+        // on the JIT treating static finals as constants; it won't work with just
+        // finals, which is fine as the preferred vector size is fixed for a given run.
+        private static final FizzBuzz INSTANCE = new FizzBuzz(IntVector.SPECIES_PREFERRED);
+    }
+
+    public int[] simdFizzBuzz256(int[] values) {
         int[] result = new int[values.length];
-        final int offset = IntVector.SPECIES_128.length();
+        simdFizzBuzz256(values, 0, result, 0, values.length);
+        return result;
+    }
 
-        // Divide the masks into four halves, since we can only load 4 integers in 128bit vector
+    public void simdFizzBuzz256(int[] src, int srcOff, int[] dst, int dstOff, int len) {
+        final int offset = IntVector.SPECIES_256.length();
 
-        VectorMask<Integer> fizzMaskFirst = VectorMask.fromArray(IntVector.SPECIES_128, multiplesOf3, 0);
-        VectorMask<Integer> buzzMaskFirst = VectorMask.fromArray(IntVector.SPECIES_128, multiplesOf5, 0);
-        VectorMask<Integer> fizzBuzzMaskFirst = fizzMaskFirst.and(buzzMaskFirst);
+        int upperBound = len / 15;
+        int index = 0;
+        for (int j = 0; j < upperBound; j++) {
+            IntVector vectorFirst = IntVector.fromArray(IntVector.SPECIES_256, src, srcOff + index);
+            vectorFirst.blend(FIZZ, FIZZ_MASK_256_FIRST)
+                    .blend(BUZZ, BUZZ_MASK_256_FIRST)
+                    .blend(FIZZ_BUZZ, FIZZ_BUZZ_MASK_256_FIRST)
+                    .intoArray(dst, dstOff + index);
+            index += offset;
 
-        VectorMask<Integer> fizzMaskSecond = VectorMask.fromArray(IntVector.SPECIES_128, multiplesOf3, offset);
-        VectorMask<Integer> buzzMaskSecond = VectorMask.fromArray(IntVector.SPECIES_128, multiplesOf5, offset);
-        VectorMask<Integer> fizzBuzzMaskSecond = fizzMaskSecond.and(buzzMaskSecond);
+            IntVector vectorSecond = IntVector.fromArray(IntVector.SPECIES_256, src, srcOff + index, EXCLUDE_LAST_256);
+            vectorSecond.blend(FIZZ, FIZZ_MASK_256_SECOND)
+                    .blend(BUZZ, BUZZ_MASK_256_SECOND)
+                    .blend(FIZZ_BUZZ, FIZZ_BUZZ_MASK_256_SECOND)
+                    .intoArray(dst, dstOff + index, EXCLUDE_LAST_256);
+            index += offset - 1;
+        }
 
-        VectorMask<Integer> fizzMaskThird = VectorMask.fromArray(IntVector.SPECIES_128, multiplesOf3, offset * 2);
-        VectorMask<Integer> buzzMaskThird = VectorMask.fromArray(IntVector.SPECIES_128, multiplesOf5, offset * 2);
-        VectorMask<Integer> fizzBuzzMaskThird = fizzMaskThird.and(buzzMaskThird);
+        scalarFizzBuzzHelper(src, srcOff + index, dst, dstOff + index, len - index);
+    }
 
-        VectorMask<Integer> fizzMaskFourth = VectorMask.fromArray(IntVector.SPECIES_128, multiplesOf3, offset * 3);
-        VectorMask<Integer> buzzMaskFourth = VectorMask.fromArray(IntVector.SPECIES_128, multiplesOf5, offset * 3);
-        VectorMask<Integer> fizzBuzzMaskFourth = fizzMaskFourth.and(buzzMaskFourth);
+    int[] simdFizzBuzz128(int[] values) {
+        int[] result = new int[values.length];
+        simdFizzBuzz128(values, 0, result, 0, values.length);
+        return result;
+    }
 
-        final boolean[] excludeLast = {true, true, true, false};
-        VectorMask<Integer> excludeLastElement = VectorMask.fromArray(IntVector.SPECIES_128, excludeLast, 0);
+    void simdFizzBuzz128(int[] src, int srcOff, int[] dst, int dstOff, int len) {
+        final int offset = IntVector.SPECIES_128.length();
 
-        int upperBound = values.length / 15;
+        int upperBound = len / 15;
         int index = 0;
         for (int j = 0; j < upperBound; j++) {
-            IntVector vectorFirst = IntVector.fromArray(IntVector.SPECIES_128, values, index);
-            vectorFirst.blend(FIZZ, fizzMaskFirst)
-                    .blend(BUZZ, buzzMaskFirst)
-                    .blend(FIZZ_BUZZ, fizzBuzzMaskFirst)
-                    .intoArray(result, index);
+            IntVector vectorFirst = IntVector.fromArray(IntVector.SPECIES_128, src, srcOff + index);
+            vectorFirst.blend(FIZZ, FIZZ_MASK_128_FIRST)
+                    .blend(BUZZ, BUZZ_MASK_128_FIRST)
+                    .blend(FIZZ_BUZZ, FIZZ_BUZZ_MASK_128_FIRST)
+                    .intoArray(dst, dstOff + index);
             index += offset;
 
-            IntVector vectorSecond = IntVector.fromArray(IntVector.SPECIES_128, values, index);
-            vectorSecond.blend(FIZZ, fizzMaskSecond)
-                    .blend(BUZZ, buzzMaskSecond)
-                    .blend(FIZZ_BUZZ, fizzBuzzMaskSecond)
-                    .intoArray(result, index);
+            IntVector vectorSecond = IntVector.fromArray(IntVector.SPECIES_128, src, srcOff + index);
+            vectorSecond.blend(FIZZ, FIZZ_MASK_128_SECOND)
+                    .blend(BUZZ, BUZZ_MASK_128_SECOND)
+                    .blend(FIZZ_BUZZ, FIZZ_BUZZ_MASK_128_SECOND)
+                    .intoArray(dst, dstOff + index);
             index += offset;
 
-            IntVector vectorThird = IntVector.fromArray(IntVector.SPECIES_128, values, index);
-            vectorThird.blend(FIZZ, fizzMaskThird)
-                    .blend(BUZZ, buzzMaskThird)
-                    .blend(FIZZ_BUZZ, fizzBuzzMaskThird)
-                    .intoArray(result, index);
+            IntVector vectorThird = IntVector.fromArray(IntVector.SPECIES_128, src, srcOff + index);
+            vectorThird.blend(FIZZ, FIZZ_MASK_128_THIRD)
+                    .blend(BUZZ, BUZZ_MASK_128_THIRD)
+                    .blend(FIZZ_BUZZ, FIZZ_BUZZ_MASK_128_THIRD)
+                    .intoArray(dst, dstOff + index);
             index += offset;
 
-            IntVector vectorFourth = IntVector.fromArray(IntVector.SPECIES_128, values, index, excludeLastElement);
-            vectorFourth.blend(FIZZ, fizzMaskFourth)
-                    .blend(BUZZ, buzzMaskFourth)
-                    .blend(FIZZ_BUZZ, fizzBuzzMaskFourth)
-                    .intoArray(result, index, excludeLastElement);
+            IntVector vectorFourth = IntVector.fromArray(IntVector.SPECIES_128, src, srcOff + index, EXCLUDE_LAST_128);
+            vectorFourth.blend(FIZZ, FIZZ_MASK_128_FOURTH)
+                    .blend(BUZZ, BUZZ_MASK_128_FOURTH)
+                    .blend(FIZZ_BUZZ, FIZZ_BUZZ_MASK_128_FOURTH)
+                    .intoArray(dst, dstOff + index, EXCLUDE_LAST_128);
             index += offset - 1;
         }
 
-        scalarFizzBuzzHelper(values, index, result);
-
-        return result;
+        scalarFizzBuzzHelper(src, srcOff + index, dst, dstOff + index, len - index);
     }
 }
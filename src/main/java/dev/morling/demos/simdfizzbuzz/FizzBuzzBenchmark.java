@@ -15,18 +15,45 @@
  */
 package dev.morling.demos.simdfizzbuzz;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 
+import org.openjdk.jmh.annotations.AuxCounters;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
 import org.openjdk.jmh.annotations.Level;
 import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
 import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
 import org.openjdk.jmh.infra.Blackhole;
 
+import jdk.incubator.foreign.MemorySegment;
+import jdk.incubator.foreign.ResourceScope;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
 public class FizzBuzzBenchmark {
 
     @State(Scope.Benchmark)
@@ -36,12 +63,427 @@ public class FizzBuzzBenchmark {
         public int arrayLength;
 
         FizzBuzz fizzBuzz;
+        ScalarFizzBuzz scalarFizzBuzz;
+        int[] values;
+        int[] result;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            fizzBuzz = new FizzBuzz();
+            scalarFizzBuzz = new ScalarFizzBuzz();
+            values = IntStream.range(1, arrayLength + 1).toArray();
+            result = new int[arrayLength];
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class SpeciesState {
+
+        @Param({"256"})
+        public int arrayLength;
+
+        @Param({"64", "128", "256", "512"})
+        public int vectorBits;
+
+        FizzBuzz fizzBuzz;
+        int[] values;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            fizzBuzz = new FizzBuzz(VectorSpecies.of(int.class, VectorShape.forBitSize(vectorBits)));
+            values = IntStream.range(1, arrayLength + 1).toArray();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class RandomValuesState {
+
+        @Param({"256"})
+        public int arrayLength;
+
+        FizzBuzz fizzBuzz;
+        PackedFizzBuzz packedFizzBuzz;
+        int[] values;
+        int[] result;
+        long[] packed;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            fizzBuzz = new FizzBuzz();
+            packedFizzBuzz = new PackedFizzBuzz();
+            values = new Random(42).ints(arrayLength).toArray();
+            result = new int[arrayLength];
+            packed = packedFizzBuzz.classify(values);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class LongState {
+
+        @Param({"256", "65536"})
+        public int arrayLength;
+
+        FizzBuzz fizzBuzz;
+        LongFizzBuzz longFizzBuzz;
+        int[] values;
+        int[] result;
+        long[] longValues;
+        long[] longResult;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            fizzBuzz = new FizzBuzz();
+            longFizzBuzz = new LongFizzBuzz();
+            values = IntStream.range(1, arrayLength + 1).toArray();
+            result = new int[arrayLength];
+            longValues = LongStream.range(1, arrayLength + 1).toArray();
+            longResult = new long[arrayLength];
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class ParallelState {
+
+        @Param({"1048576", "16777216", "268435456"})
+        public int arrayLength;
+
+        @Param({"1", "2", "4", "8", "16", "32"})
+        public int parallelism;
+
+        @Param({"65536"})
+        public int minChunkSize;
+
+        ForkJoinPool pool;
+        ParallelFizzBuzz parallelFizzBuzz;
+        int[] values;
+        int[] result;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            pool = new ForkJoinPool(parallelism);
+            parallelFizzBuzz = new ParallelFizzBuzz(new FizzBuzz(), pool, minChunkSize);
+            values = IntStream.range(1, arrayLength + 1).toArray();
+            result = new int[arrayLength];
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            pool.shutdown();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class RenderState {
+
+        @Param({"65536"})
+        public int bufferSize;
+
+        FizzBuzz fizzBuzz;
+        FizzBuzzRenderer renderer;
+        ByteBuffer buffer;
+        long next;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            fizzBuzz = new FizzBuzz();
+            renderer = new FizzBuzzRenderer(1);
+            buffer = ByteBuffer.allocateDirect(bufferSize);
+            next = 1;
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class FileState {
+
+        @Param({"10000000"})
+        public long count;
+
+        @Param({"1", "4"})
+        public int parallelism;
+
+        FizzBuzzFileWriter writer;
+        Path file;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            writer = new FizzBuzzFileWriter(FizzBuzzFileWriter.DEFAULT_LINES_PER_WINDOW, parallelism);
+            file = Files.createTempFile("fizzbuzz", ".txt");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class VerifyState {
+
+        @Param({"10000000"})
+        public int count;
+
+        @Param({"1", "4"})
+        public int parallelism;
+
+        FizzBuzzVerifier verifier;
+        Path textFile;
+        Path intFile;
+        long textSize;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            verifier = new FizzBuzzVerifier(FizzBuzzVerifier.DEFAULT_ELEMENTS_PER_WINDOW / 4, parallelism);
+
+            textFile = Files.createTempFile("fizzbuzz", ".txt");
+            textSize = new FizzBuzzFileWriter().write(textFile, count);
+
+            intFile = Files.createTempFile("fizzbuzz", ".bin");
+            try (FileChannel channel = FileChannel.open(intFile, StandardOpenOption.WRITE)) {
+                int[] block = new int[64 * 1024];
+                ByteBuffer buffer = ByteBuffer.allocate(block.length * Integer.BYTES).order(ByteOrder.nativeOrder());
+                FizzBuzz fizzBuzz = new FizzBuzz();
+
+                for (int i = 0; i < count; i += block.length) {
+                    int length = Math.min(block.length, count - i);
+                    fizzBuzz.fizzBuzzRange(i + 1, length, block);
+                    buffer.clear();
+                    buffer.asIntBuffer().put(block, 0, length);
+                    buffer.limit(length * Integer.BYTES);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                }
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(textFile);
+            Files.deleteIfExists(intFile);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class StreamState {
+
+        @Param({"10000000"})
+        public long count;
+
+        @Param({"1", "2", "4"})
+        public int computeThreads;
+
+        FizzBuzzStreamer streamer;
+        FileChannel devNull;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            streamer = new FizzBuzzStreamer(FizzBuzzStreamer.DEFAULT_BUFFER_SIZE, FizzBuzzStreamer.DEFAULT_BUFFERS, computeThreads);
+            devNull = FileChannel.open(Path.of("/dev/null"), StandardOpenOption.WRITE);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            devNull.close();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class OffHeapState {
+
+        @Param({"256", "1048576"})
+        public int arrayLength;
+
+        FizzBuzz fizzBuzz;
+        ScalarFizzBuzz scalarFizzBuzz;
+        OffHeapFizzBuzz offHeapFizzBuzz;
+        int[] values;
+        int[] result;
+        ByteBuffer valuesBuffer;
+        ByteBuffer resultBuffer;
+        ResourceScope scope;
+        MemorySegment valuesSegment;
+        MemorySegment resultSegment;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            fizzBuzz = new FizzBuzz();
+            scalarFizzBuzz = new ScalarFizzBuzz();
+            offHeapFizzBuzz = new OffHeapFizzBuzz();
+            values = IntStream.range(1, arrayLength + 1).toArray();
+            result = new int[arrayLength];
+
+            valuesBuffer = ByteBuffer.allocateDirect(arrayLength * Integer.BYTES).order(ByteOrder.nativeOrder());
+            valuesBuffer.asIntBuffer().put(values);
+            resultBuffer = ByteBuffer.allocateDirect(arrayLength * Integer.BYTES).order(ByteOrder.nativeOrder());
+
+            scope = ResourceScope.newSharedScope();
+            valuesSegment = MemorySegment.allocateNative((long) arrayLength * Integer.BYTES, scope);
+            valuesSegment.copyFrom(MemorySegment.ofArray(values));
+            resultSegment = MemorySegment.allocateNative((long) arrayLength * Integer.BYTES, scope);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            scope.close();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class SummaryState {
+
+        @Param({"1048576", "16777216"})
+        public int arrayLength;
+
+        FizzBuzz fizzBuzz;
+        int[] values;
+        int[] result;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            fizzBuzz = new FizzBuzz();
+            values = IntStream.range(1, arrayLength + 1).toArray();
+            result = new int[arrayLength];
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class CoalescerState {
+
+        @Param({"512", "4096"})
+        public int maxBatchSize;
+
+        @Param({"0", "50"})
+        public int maxDelayMicros;
+
+        FizzBuzzCoalescer coalescer;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            coalescer = new FizzBuzzCoalescer(new FizzBuzz(), maxBatchSize, Duration.ofNanos(maxDelayMicros * 1000L));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            coalescer.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class RequestState {
+
+        @Param({"8", "64"})
+        public int requestLength;
+
+        FizzBuzz fizzBuzz;
+        int[] values;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            fizzBuzz = new FizzBuzz();
+            values = IntStream.range(1, requestLength + 1).toArray();
+        }
+    }
+
+    /**
+     * Holds both an uninstrumented and an instrumented instance, so that the
+     * uninstrumented runs show the cost of merely having the instrumented subclass
+     * loaded, which should be none.
+     */
+    @State(Scope.Benchmark)
+    public static class InstrumentationState {
+
+        @Param({"256", "65536"})
+        public int arrayLength;
+
+        FizzBuzz fizzBuzz;
+        FizzBuzz instrumentedFizzBuzz;
         int[] values;
+        int[] result;
 
         @Setup(Level.Trial)
         public void setUp() {
             fizzBuzz = new FizzBuzz();
+            instrumentedFizzBuzz = new InstrumentedFizzBuzz();
             values = IntStream.range(1, arrayLength + 1).toArray();
+            result = new int[arrayLength];
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class SharedFizzBuzzState {
+
+        FizzBuzz fizzBuzz;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            fizzBuzz = new FizzBuzz();
+        }
+    }
+
+    /**
+     * Holds each benchmark thread's arrays, and its own {@link FizzBuzz} instance for
+     * comparison with a shared one.
+     */
+    @State(Scope.Thread)
+    public static class ThreadState {
+
+        @Param({"256"})
+        public int arrayLength;
+
+        FizzBuzz fizzBuzz;
+        int[] values;
+        int[] result;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            fizzBuzz = new FizzBuzz();
+            values = IntStream.range(1, arrayLength + 1).toArray();
+            result = new int[arrayLength];
+        }
+    }
+
+    /**
+     * The rule sets: the classic one, 3/5/7 with a table over 105 elements, and one
+     * whose period is too large for tables.
+     */
+    @State(Scope.Benchmark)
+    public static class RulesState {
+
+        @Param({"3,5", "3,5,7", "7,11,13,17"})
+        public String divisors;
+
+        @Param({"256", "65536"})
+        public int arrayLength;
+
+        FizzBuzzRules rules;
+        int[] values;
+        int[] result;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            List<FizzBuzzRules.Rule> ruleList = new ArrayList<>();
+            for (String divisor : divisors.split(",")) {
+                ruleList.add(new FizzBuzzRules.Rule(Integer.parseInt(divisor), "Rule" + divisor));
+            }
+
+            rules = new FizzBuzzRules(ruleList);
+            values = IntStream.range(1, arrayLength + 1).toArray();
+            result = new int[arrayLength];
+        }
+    }
+
+    /**
+     * Reports the number of bytes written per second by the benchmarks using it.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class ByteCounters {
+
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
         }
     }
 
@@ -81,6 +523,12 @@ public class FizzBuzzBenchmark {
         blackhole.consume(state.fizzBuzz.simdFizzBuzzMasked(state.values));
     }
 
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void simdFizzBuzzAnySpecies(SpeciesState state, Blackhole blackhole) {
+        blackhole.consume(state.fizzBuzz.simdFizzBuzzAnySpecies(state.values));
+    }
+
     @Benchmark
     @BenchmarkMode(Mode.Throughput)
     public void simdFizzBuzzMaskedPreferred(MyState state, Blackhole blackhole) {
@@ -98,4 +546,466 @@ public class FizzBuzzBenchmark {
     public void simdFizzBuzzMasked128(MyState state, Blackhole blackhole) {
         blackhole.consume(state.fizzBuzz.simdFizzBuzz128(state.values));
     }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void scalarFizzBuzzInto(MyState state, Blackhole blackhole) {
+        state.fizzBuzz.serialFizzBuzz(state.values, 0, state.result, 0, state.arrayLength);
+        blackhole.consume(state.result);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void scalarFizzBuzzMaskedInto(MyState state, Blackhole blackhole) {
+        state.fizzBuzz.serialFizzBuzzMasked(state.values, 0, state.result, 0, state.arrayLength);
+        blackhole.consume(state.result);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void scalarFizzBuzzUnrolledInto(MyState state, Blackhole blackhole) {
+        state.scalarFizzBuzz.fizzBuzz(state.values, 0, state.result, 0, state.arrayLength);
+        blackhole.consume(state.result);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void simdFizzBuzzInto(MyState state, Blackhole blackhole) {
+        state.fizzBuzz.simdFizzBuzz(state.values, 0, state.result, 0, state.arrayLength);
+        blackhole.consume(state.result);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void simdFizzBuzzMasksInArrayInto(MyState state, Blackhole blackhole) {
+        state.fizzBuzz.simdFizzBuzzMasksInArray(state.values, 0, state.result, 0, state.arrayLength);
+        blackhole.consume(state.result);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void simdFizzBuzzSeparateMaskIndexInto(MyState state, Blackhole blackhole) {
+        state.fizzBuzz.simdFizzBuzzSeparateMaskIndex(state.values, 0, state.result, 0, state.arrayLength);
+        blackhole.consume(state.result);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void simdFizzBuzzUnrolled256Into(MyState state, Blackhole blackhole) {
+        state.fizzBuzz.simdFizzBuzzUnrolled256(state.values, 0, state.result, 0, state.arrayLength);
+        blackhole.consume(state.result);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void simdFizzBuzzMaskedInto(MyState state, Blackhole blackhole) {
+        state.fizzBuzz.simdFizzBuzzMasked(state.values, 0, state.result, 0, state.arrayLength);
+        blackhole.consume(state.result);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void simdFizzBuzzMaskedPreferredInto(MyState state, Blackhole blackhole) {
+        state.fizzBuzz.simdFizzBuzzPreferred(state.values, 0, state.result, 0, state.arrayLength);
+        blackhole.consume(state.result);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void simdFizzBuzzMasked256Into(MyState state, Blackhole blackhole) {
+        state.fizzBuzz.simdFizzBuzz256(state.values, 0, state.result, 0, state.arrayLength);
+        blackhole.consume(state.result);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void simdFizzBuzzMasked128Into(MyState state, Blackhole blackhole) {
+        state.fizzBuzz.simdFizzBuzz128(state.values, 0, state.result, 0, state.arrayLength);
+        blackhole.consume(state.result);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void scalarFizzBuzzRandomValues(RandomValuesState state, Blackhole blackhole) {
+        blackhole.consume(state.fizzBuzz.serialFizzBuzz(state.values));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void simdFizzBuzzByValueRandomValues(RandomValuesState state, Blackhole blackhole) {
+        blackhole.consume(state.fizzBuzz.simdFizzBuzzByValue(state.values));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void fizzBuzzRange(MyState state, Blackhole blackhole) {
+        state.fizzBuzz.fizzBuzzRange(1, state.arrayLength, state.result);
+        blackhole.consume(state.result);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void parallelFizzBuzz(ParallelState state, Blackhole blackhole) {
+        state.parallelFizzBuzz.fizzBuzz(state.values, 0, state.result, 0, state.arrayLength);
+        blackhole.consume(state.result);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void parallelFizzBuzzRange(ParallelState state, Blackhole blackhole) {
+        state.parallelFizzBuzz.fizzBuzzRange(1, state.arrayLength, state.result);
+        blackhole.consume(state.result);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void renderText(RenderState state, ByteCounters counters, Blackhole blackhole) {
+        state.buffer.clear();
+        state.renderer.render(state.buffer, Long.MAX_VALUE);
+        counters.bytes += state.buffer.position();
+        blackhole.consume(state.buffer);
+    }
+
+    /**
+     * Renders the int[] results of the fastest kernel via Integer.toString(), as a
+     * baseline for {@link #renderText(RenderState, ByteCounters, Blackhole)}.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void renderTextViaToString(RenderState state, ByteCounters counters, Blackhole blackhole) {
+        ByteBuffer buffer = state.buffer;
+        buffer.clear();
+
+        // 19 digits and a line break per line at most
+        int count = buffer.capacity() / 20;
+        int[] result = new int[count];
+        state.fizzBuzz.fizzBuzzRange(state.next, count, result);
+
+        for (int value : result) {
+            String line = value == -1 ? "Fizz\n" : value == -2 ? "Buzz\n" : value == -3 ? "FizzBuzz\n" : Integer.toString(value) + "\n";
+            buffer.put(line.getBytes(StandardCharsets.US_ASCII));
+        }
+
+        state.next = state.next + count > Integer.MAX_VALUE ? 1 : state.next + count;
+        counters.bytes += buffer.position();
+        blackhole.consume(buffer);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void writeFileMapped(FileState state, ByteCounters counters) throws IOException {
+        counters.bytes += state.writer.write(state.file, state.count);
+    }
+
+    /**
+     * Renders into a heap buffer and writes that to a buffered stream, as a baseline
+     * for {@link #writeFileMapped(FileState, ByteCounters)}.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void writeFileBufferedOutputStream(FileState state, ByteCounters counters) throws IOException {
+        var renderer = new FizzBuzzRenderer(1);
+        var buffer = ByteBuffer.allocate(64 * 1024);
+
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(state.file))) {
+            while (renderer.next() <= state.count) {
+                buffer.clear();
+                renderer.render(buffer, state.count + 1);
+                out.write(buffer.array(), 0, buffer.position());
+                counters.bytes += buffer.position();
+            }
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void streamToDevNull(StreamState state, ByteCounters counters) throws IOException {
+        counters.bytes += state.streamer.stream(1, state.count + 1, state.devNull);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void verifyTextFile(VerifyState state, ByteCounters counters) throws IOException {
+        if (state.verifier.verifyText(state.textFile, 1) != -1) {
+            throw new IllegalStateException("Unexpected mismatch");
+        }
+        counters.bytes += state.textSize;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void verifyIntFile(VerifyState state, ByteCounters counters) throws IOException {
+        if (state.verifier.verifyInts(state.intFile, 1, ByteOrder.nativeOrder()) != -1) {
+            throw new IllegalStateException("Unexpected mismatch");
+        }
+        counters.bytes += (long) state.count * Integer.BYTES;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void simdFizzBuzzSeparateMaskIndexHeap(OffHeapState state, Blackhole blackhole) {
+        state.fizzBuzz.simdFizzBuzzSeparateMaskIndex(state.values, 0, state.result, 0, state.arrayLength);
+        blackhole.consume(state.result);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void simdFizzBuzzSeparateMaskIndexByteBuffer(OffHeapState state, Blackhole blackhole) {
+        state.fizzBuzz.simdFizzBuzzSeparateMaskIndex(state.valuesBuffer, 0, state.resultBuffer, 0, state.arrayLength);
+        blackhole.consume(state.resultBuffer);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void scalarFizzBuzzUnrolledHeap(OffHeapState state, Blackhole blackhole) {
+        state.scalarFizzBuzz.fizzBuzz(state.values, 0, state.result, 0, state.arrayLength);
+        blackhole.consume(state.result);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void scalarFizzBuzzUnrolledByteBuffer(OffHeapState state, Blackhole blackhole) {
+        state.scalarFizzBuzz.fizzBuzz(state.valuesBuffer, 0, state.resultBuffer, 0, state.arrayLength);
+        blackhole.consume(state.resultBuffer);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void simdFizzBuzzSeparateMaskIndexSegment(OffHeapState state, Blackhole blackhole) {
+        state.offHeapFizzBuzz.simdFizzBuzzSeparateMaskIndex(state.valuesSegment, state.resultSegment, ByteOrder.nativeOrder());
+        blackhole.consume(state.resultSegment);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void simdFizzBuzzMaskedHeap(OffHeapState state, Blackhole blackhole) {
+        state.fizzBuzz.simdFizzBuzzMasked(state.values, 0, state.result, 0, state.arrayLength);
+        blackhole.consume(state.result);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void simdFizzBuzzMaskedByteBuffer(OffHeapState state, Blackhole blackhole) {
+        state.fizzBuzz.simdFizzBuzzMasked(state.valuesBuffer, 0, state.resultBuffer, 0, state.arrayLength);
+        blackhole.consume(state.resultBuffer);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void simdFizzBuzzMaskedSegment(OffHeapState state, Blackhole blackhole) {
+        state.offHeapFizzBuzz.simdFizzBuzzMasked(state.valuesSegment, state.resultSegment, ByteOrder.nativeOrder());
+        blackhole.consume(state.resultSegment);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void simdFizzBuzzByValueRandomValuesInto(RandomValuesState state, Blackhole blackhole) {
+        state.fizzBuzz.simdFizzBuzzByValue(state.values, 0, state.result, 0, state.arrayLength);
+        blackhole.consume(state.result);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void classifyPackedRandomValues(RandomValuesState state, Blackhole blackhole) {
+        state.packedFizzBuzz.classify(state.values, 0, state.arrayLength, state.packed);
+        blackhole.consume(state.packed);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void decodePackedRandomValues(RandomValuesState state, Blackhole blackhole) {
+        state.packedFizzBuzz.decode(state.packed, state.values, 0, state.result, 0, state.arrayLength);
+        blackhole.consume(state.result);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void classifyPackedRange(RandomValuesState state, Blackhole blackhole) {
+        state.packedFizzBuzz.classifyRange(1, state.arrayLength, state.packed);
+        blackhole.consume(state.packed);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void intSerialFizzBuzz(LongState state, Blackhole blackhole) {
+        state.fizzBuzz.serialFizzBuzz(state.values, 0, state.result, 0, state.arrayLength);
+        blackhole.consume(state.result);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void longSerialFizzBuzz(LongState state, Blackhole blackhole) {
+        state.longFizzBuzz.serialFizzBuzz(state.longValues, 0, state.longResult, 0, state.arrayLength);
+        blackhole.consume(state.longResult);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void intSimdFizzBuzz(LongState state, Blackhole blackhole) {
+        state.fizzBuzz.simdFizzBuzzAnySpecies(state.values, 0, state.result, 0, state.arrayLength);
+        blackhole.consume(state.result);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void longSimdFizzBuzz(LongState state, Blackhole blackhole) {
+        state.longFizzBuzz.simdFizzBuzz(state.longValues, 0, state.longResult, 0, state.arrayLength);
+        blackhole.consume(state.longResult);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void intFizzBuzzRange(LongState state, Blackhole blackhole) {
+        state.fizzBuzz.fizzBuzzRange(1, state.arrayLength, state.result);
+        blackhole.consume(state.result);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void longFizzBuzzRange(LongState state, Blackhole blackhole) {
+        state.longFizzBuzz.fizzBuzzRange(1, state.arrayLength, state.longResult);
+        blackhole.consume(state.longResult);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void engineFizzBuzz(MyState state, Blackhole blackhole) {
+        FizzBuzzEngine.fizzBuzz(state.values, 0, state.result, 0, state.arrayLength);
+        blackhole.consume(state.result);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void summaryTwoPass(SummaryState state, Blackhole blackhole) {
+        state.fizzBuzz.simdFizzBuzzSeparateMaskIndex(state.values, 0, state.result, 0, state.arrayLength);
+
+        long fizz = 0;
+        long buzz = 0;
+        long fizzBuzz = 0;
+        long numbers = 0;
+        long sum = 0;
+        for (int value : state.result) {
+            switch (value) {
+                case -1 -> fizz++;
+                case -2 -> buzz++;
+                case -3 -> fizzBuzz++;
+                default -> {
+                    numbers++;
+                    sum += value;
+                }
+            }
+        }
+
+        blackhole.consume(new FizzBuzz.Summary(fizz, buzz, fizzBuzz, numbers, sum));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public FizzBuzz.Summary simdFizzBuzzSummary(SummaryState state) {
+        return state.fizzBuzz.simdFizzBuzzSummary(state.values, 0, state.arrayLength);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public FizzBuzz.Summary simdFizzBuzzByValueSummary(SummaryState state) {
+        return state.fizzBuzz.simdFizzBuzzByValueSummary(state.values, 0, state.arrayLength);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public FizzBuzz.Summary summarizeRange(SummaryState state) {
+        return FizzBuzz.summarizeRange(1, state.arrayLength);
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Threads(16)
+    public int[] coalescedFizzBuzz(CoalescerState coalescerState, RequestState state) {
+        return coalescerState.coalescer.submit(state.values).join();
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Threads(16)
+    public int[] directSimdFizzBuzzByValue(RequestState state) {
+        return state.fizzBuzz.simdFizzBuzzByValue(state.values);
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Threads(16)
+    public int[] directSimdFizzBuzz(RequestState state) {
+        return state.fizzBuzz.simdFizzBuzz(state.values);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void uninstrumentedFizzBuzz(InstrumentationState state, Blackhole blackhole) {
+        state.fizzBuzz.simdFizzBuzzSeparateMaskIndex(state.values, 0, state.result, 0, state.arrayLength);
+        blackhole.consume(state.result);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void instrumentedFizzBuzz(InstrumentationState state, Blackhole blackhole) {
+        state.instrumentedFizzBuzz.simdFizzBuzzSeparateMaskIndex(state.values, 0, state.result, 0, state.arrayLength);
+        blackhole.consume(state.result);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @Fork(jvmArgsAppend = "-XX:StartFlightRecording=disk=false")
+    public void instrumentedFizzBuzzJfrRecording(InstrumentationState state, Blackhole blackhole) {
+        state.instrumentedFizzBuzz.simdFizzBuzzSeparateMaskIndex(state.values, 0, state.result, 0, state.arrayLength);
+        blackhole.consume(state.result);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @Threads(4)
+    public void sharedSimdFizzBuzz256(SharedFizzBuzzState shared, ThreadState state, Blackhole blackhole) {
+        shared.fizzBuzz.simdFizzBuzz256(state.values, 0, state.result, 0, state.arrayLength);
+        blackhole.consume(state.result);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @Threads(4)
+    public void perThreadSimdFizzBuzz256(ThreadState state, Blackhole blackhole) {
+        state.fizzBuzz.simdFizzBuzz256(state.values, 0, state.result, 0, state.arrayLength);
+        blackhole.consume(state.result);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @Threads(4)
+    public void sharedSimdFizzBuzzSeparateMaskIndex(SharedFizzBuzzState shared, ThreadState state, Blackhole blackhole) {
+        shared.fizzBuzz.simdFizzBuzzSeparateMaskIndex(state.values, 0, state.result, 0, state.arrayLength);
+        blackhole.consume(state.result);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @Threads(4)
+    public void perThreadSimdFizzBuzzSeparateMaskIndex(ThreadState state, Blackhole blackhole) {
+        state.fizzBuzz.simdFizzBuzzSeparateMaskIndex(state.values, 0, state.result, 0, state.arrayLength);
+        blackhole.consume(state.result);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void fizzBuzzRules(RulesState state, Blackhole blackhole) {
+        state.rules.fizzBuzz(state.values, 0, state.result, 0, state.arrayLength);
+        blackhole.consume(state.result);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void fizzBuzzRulesByValue(RulesState state, Blackhole blackhole) {
+        state.rules.fizzBuzzByValue(state.values, 0, state.result, 0, state.arrayLength);
+        blackhole.consume(state.result);
+    }
 }
@@ -0,0 +1,369 @@
+/**
+ *  Copyright 2021 Gunnar Morling
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package dev.morling.demos.simdfizzbuzz;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.IntStream;
+
+import jdk.incubator.vector.IntVector;
+
+/**
+ * Dispatches FizzBuzz calls to the kernel which is the fastest on the current host,
+ * for the size class of the given input. As the README numbers show, which kernel
+ * wins differs a lot between machines.
+ * <p>
+ * Upon first use, all candidate kernels are calibrated briefly for each size class.
+ * If the {@value #PROFILE_PROPERTY} system property is set to a file path, the chosen
+ * profile is stored in that properties file, so that later JVM starts on the same host
+ * can skip the calibration; by default, nothing is written. The kernels are invoked
+ * through {@code static final} method handles, allowing the JIT to inline them.
+ * <p>
+ * Like the position-based kernels of {@link FizzBuzz}, the element at
+ * {@code srcOff} is expected to be at position 0 of the FizzBuzz period.
+ * <p>
+ * If the JVM has been started without {@code --add-modules jdk.incubator.vector},
+ * no calibration takes place and all calls are dispatched to {@link ScalarFizzBuzz};
+ * none of the classes using the Vector API are loaded then.
+ */
+public final class FizzBuzzEngine {
+
+    public static final String PROFILE_PROPERTY = "fizzbuzz.engine.profile";
+    public static final String CALIBRATION_MILLIS_PROPERTY = "fizzbuzz.engine.calibrationMillis";
+
+    /**
+     * The inclusive upper bounds of the size classes.
+     */
+    static final int[] SIZE_CLASSES = { 64, 1024, 65536, Integer.MAX_VALUE };
+
+    // the input sizes used for calibrating each size class
+    private static final int[] CALIBRATION_SIZES = { 48, 768, 16384, 1 << 20 };
+
+    private static final MethodType KERNEL_TYPE = MethodType.methodType(void.class, int[].class, int.class, int[].class, int.class, int.class);
+
+    private static final System.Logger LOGGER = System.getLogger(FizzBuzzEngine.class.getName());
+
+    static final boolean VECTOR_API_AVAILABLE = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    private static final ScalarFizzBuzz SCALAR_FIZZ_BUZZ = new ScalarFizzBuzz();
+
+    public enum Kernel {
+        SERIAL("serialFizzBuzz"),
+        SERIAL_MASKED("serialFizzBuzzMasked"),
+        SIMD("simdFizzBuzz"),
+        SIMD_MASKS_IN_ARRAY("simdFizzBuzzMasksInArray"),
+        SIMD_SEPARATE_MASK_INDEX("simdFizzBuzzSeparateMaskIndex"),
+        SIMD_MASKED("simdFizzBuzzMasked"),
+        SIMD_UNROLLED_256("simdFizzBuzzUnrolled256"),
+        SIMD_256("simdFizzBuzz256"),
+        SIMD_128("simdFizzBuzz128"),
+        SIMD_ANY_SPECIES("simdFizzBuzzAnySpecies"),
+        SCALAR_UNROLLED("fizzBuzz");
+
+        private final String methodName;
+
+        Kernel(String methodName) {
+            this.methodName = methodName;
+        }
+
+        /**
+         * Returns a handle of type {@code (int[], int, int[], int, int)void} for this
+         * kernel, bound to the given instance, or to the {@link ScalarFizzBuzz} instance
+         * for {@link #SCALAR_UNROLLED}.
+         */
+        MethodHandle handle(FizzBuzz fizzBuzz) {
+            try {
+                // FizzBuzz.class is only referenced for the vector kernels, so that it
+                // isn't loaded when the Vector API isn't available
+                if (this == SCALAR_UNROLLED) {
+                    return MethodHandles.lookup()
+                            .findVirtual(ScalarFizzBuzz.class, methodName, KERNEL_TYPE)
+                            .bindTo(SCALAR_FIZZ_BUZZ);
+                }
+
+                return MethodHandles.lookup()
+                        .findVirtual(FizzBuzz.class, methodName, KERNEL_TYPE)
+                        .bindTo(fizzBuzz);
+            }
+            catch (NoSuchMethodException | IllegalAccessException e) {
+                throw new IllegalStateException("Couldn't look up kernel " + this, e);
+            }
+        }
+    }
+
+    /**
+     * The kernel chosen for each size class.
+     */
+    public record Profile(List<Kernel> kernels) {
+
+        public Profile {
+            if (kernels.size() != SIZE_CLASSES.length) {
+                throw new IllegalArgumentException("Expected one kernel per size class, got " + kernels);
+            }
+            kernels = List.copyOf(kernels);
+        }
+
+        public Kernel kernelFor(int len) {
+            return kernels.get(sizeClass(len));
+        }
+    }
+
+    private FizzBuzzEngine() {
+    }
+
+    public static int[] fizzBuzz(int[] values) {
+        int[] result = new int[values.length];
+        fizzBuzz(values, 0, result, 0, values.length);
+        return result;
+    }
+
+    public static void fizzBuzz(int[] src, int srcOff, int[] dst, int dstOff, int len) {
+        try {
+            if (len <= SIZE_CLASSES[0]) {
+                Holder.SMALL.invokeExact(src, srcOff, dst, dstOff, len);
+            }
+            else if (len <= SIZE_CLASSES[1]) {
+                Holder.MEDIUM.invokeExact(src, srcOff, dst, dstOff, len);
+            }
+            else if (len <= SIZE_CLASSES[2]) {
+                Holder.LARGE.invokeExact(src, srcOff, dst, dstOff, len);
+            }
+            else {
+                Holder.HUGE.invokeExact(src, srcOff, dst, dstOff, len);
+            }
+        }
+        catch (RuntimeException | Error e) {
+            throw e;
+        }
+        catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    /**
+     * Returns the profile in use, calibrating or loading it if needed.
+     */
+    public static Profile profile() {
+        return Holder.PROFILE;
+    }
+
+    /**
+     * Measures all kernels for each size class and returns the fastest ones.
+     *
+     * @param duration the time spent on warming up and on measuring each kernel per size class
+     */
+    public static Profile calibrate(FizzBuzz fizzBuzz, Duration duration) {
+        List<Kernel> chosen = new ArrayList<>(SIZE_CLASSES.length);
+
+        for (int size : CALIBRATION_SIZES) {
+            int[] values = IntStream.range(1, size + 1).toArray();
+            int[] result = new int[size];
+
+            Kernel fastest = null;
+            double fastestNanos = Double.MAX_VALUE;
+
+            for (Kernel kernel : Kernel.values()) {
+                MethodHandle handle = kernel.handle(fizzBuzz);
+
+                measure(handle, values, result, duration);
+                double nanos = measure(handle, values, result, duration);
+
+                if (nanos < fastestNanos) {
+                    fastest = kernel;
+                    fastestNanos = nanos;
+                }
+            }
+
+            chosen.add(fastest);
+        }
+
+        return new Profile(chosen);
+    }
+
+    /**
+     * Returns the average duration of one invocation of the given kernel in ns.
+     */
+    private static double measure(MethodHandle handle, int[] values, int[] result, Duration duration) {
+        long budget = duration.toNanos();
+        long invocations = 0;
+        long start = System.nanoTime();
+        long elapsed;
+
+        try {
+            do {
+                // several invocations per clock read, keeping the timer overhead low
+                for (int i = 0; i < 16; i++) {
+                    handle.invokeExact(values, 0, result, 0, values.length);
+                }
+                invocations += 16;
+                elapsed = System.nanoTime() - start;
+            }
+            while (elapsed < budget);
+        }
+        catch (RuntimeException | Error e) {
+            throw e;
+        }
+        catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+
+        return (double) elapsed / invocations;
+    }
+
+    /**
+     * Loads a profile stored by {@link #save(Profile, Path)}, if the file exists and
+     * was written on a host with the same characteristics as the current one.
+     *
+     * @return the profile or {@code null}
+     */
+    public static Profile load(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file)) {
+            properties.load(reader);
+        }
+
+        Properties host = hostProperties();
+        for (String key : host.stringPropertyNames()) {
+            if (!host.getProperty(key).equals(properties.getProperty(key))) {
+                return null;
+            }
+        }
+
+        List<Kernel> kernels = new ArrayList<>(SIZE_CLASSES.length);
+        for (int sizeClass : SIZE_CLASSES) {
+            String kernel = properties.getProperty("kernel." + sizeClass);
+            if (kernel == null) {
+                return null;
+            }
+
+            try {
+                kernels.add(Kernel.valueOf(kernel));
+            }
+            catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        return new Profile(kernels);
+    }
+
+    public static void save(Profile profile, Path file) throws IOException {
+        Properties properties = hostProperties();
+        for (int i = 0; i < SIZE_CLASSES.length; i++) {
+            properties.setProperty("kernel." + SIZE_CLASSES[i], profile.kernels().get(i).name());
+        }
+
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+
+        try (Writer writer = Files.newBufferedWriter(file)) {
+            properties.store(writer, "FizzBuzzEngine profile");
+        }
+    }
+
+    static int sizeClass(int len) {
+        for (int i = 0; i < SIZE_CLASSES.length - 1; i++) {
+            if (len <= SIZE_CLASSES[i]) {
+                return i;
+            }
+        }
+        return SIZE_CLASSES.length - 1;
+    }
+
+    /**
+     * The characteristics a stored profile must match to be applicable.
+     */
+    private static Properties hostProperties() {
+        Properties properties = new Properties();
+        properties.setProperty("host.arch", System.getProperty("os.arch"));
+        properties.setProperty("host.processors", String.valueOf(Runtime.getRuntime().availableProcessors()));
+        properties.setProperty("java.vm.version", System.getProperty("java.vm.version"));
+        properties.setProperty("vector.species", IntVector.SPECIES_PREFERRED.toString());
+        return properties;
+    }
+
+    /**
+     * Returns the profile stored in the given file if it applies to this host, or
+     * calibrates a new one and stores it there.
+     *
+     * @param file the profile file, or {@code null} to always calibrate without storing the result
+     */
+    static Profile loadOrCalibrate(FizzBuzz fizzBuzz, Path file) {
+        if (file != null) {
+            try {
+                Profile profile = load(file);
+                if (profile != null) {
+                    LOGGER.log(System.Logger.Level.DEBUG, "Loaded profile {0} from {1}", profile, file);
+                    return profile;
+                }
+            }
+            catch (IOException e) {
+                LOGGER.log(System.Logger.Level.WARNING, "Couldn't load profile from " + file, e);
+            }
+        }
+
+        Duration duration = Duration.ofMillis(Long.getLong(CALIBRATION_MILLIS_PROPERTY, 10));
+        Profile profile = calibrate(fizzBuzz, duration);
+        LOGGER.log(System.Logger.Level.DEBUG, "Calibrated profile {0}", profile);
+
+        if (file != null) {
+            try {
+                save(profile, file);
+            }
+            catch (IOException e) {
+                LOGGER.log(System.Logger.Level.WARNING, "Couldn't save profile to " + file, e);
+            }
+        }
+
+        return profile;
+    }
+
+    private static Path profileFile() {
+        String location = System.getProperty(PROFILE_PROPERTY, "");
+        return location.isEmpty() ? null : Path.of(location);
+    }
+
+    /**
+     * Holds the chosen kernels; only initialized upon first use of the engine.
+     */
+    private static class Holder {
+
+        private static final FizzBuzz FIZZ_BUZZ = VECTOR_API_AVAILABLE ? new FizzBuzz() : null;
+        private static final Profile PROFILE = VECTOR_API_AVAILABLE
+                ? loadOrCalibrate(FIZZ_BUZZ, profileFile())
+                : new Profile(List.of(Kernel.SCALAR_UNROLLED, Kernel.SCALAR_UNROLLED, Kernel.SCALAR_UNROLLED, Kernel.SCALAR_UNROLLED));
+
+        private static final MethodHandle SMALL = PROFILE.kernels().get(0).handle(FIZZ_BUZZ);
+        private static final MethodHandle MEDIUM = PROFILE.kernels().get(1).handle(FIZZ_BUZZ);
+        private static final MethodHandle LARGE = PROFILE.kernels().get(2).handle(FIZZ_BUZZ);
+        private static final MethodHandle HUGE = PROFILE.kernels().get(3).handle(FIZZ_BUZZ);
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ *  Copyright 2021 Gunnar Morling
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package dev.morling.demos.simdfizzbuzz;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emitted by {@link InstrumentedFizzBuzz} for each kernel invocation. Kernels take
+ * nanoseconds for small inputs, so for continuous recordings, a threshold should be
+ * configured for this event.
+ */
+@Name(FizzBuzzEvent.NAME)
+@Label("FizzBuzz Kernel")
+@Category("FizzBuzz")
+@Description("Invocation of a FizzBuzz kernel")
+@StackTrace(false)
+class FizzBuzzEvent extends Event {
+
+    static final String NAME = "dev.morling.demos.simdfizzbuzz.Kernel";
+
+    @Label("Kernel")
+    String kernel;
+
+    @Label("Length")
+    @Description("Number of elements processed")
+    int length;
+
+    @Label("Tail Length")
+    @Description("Number of elements processed by scalar code rather than the vector loop")
+    int tailLength;
+}
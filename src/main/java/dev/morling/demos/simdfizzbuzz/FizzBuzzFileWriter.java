@@ -0,0 +1,161 @@
+/**
+ *  Copyright 2021 Gunnar Morling
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package dev.morling.demos.simdfizzbuzz;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Writes the FizzBuzz text for a range of numbers into a file by memory-mapping it
+ * and rendering straight into the mapped windows, avoiding any intermediary copies.
+ * As the exact byte offset of each number's line is known upfront (see
+ * {@link FizzBuzzRenderer#renderedLength(long, long)}), windows can be written
+ * independently of each other, optionally in parallel.
+ */
+public class FizzBuzzFileWriter {
+
+    public static final int DEFAULT_LINES_PER_WINDOW = 8 * 1024 * 1024;
+
+    // at most 19 digits and a line break per line, keeping each window below 2 GB
+    private static final int MAX_LINES_PER_WINDOW = Integer.MAX_VALUE / 20;
+
+    private final int linesPerWindow;
+    private final int parallelism;
+
+    public FizzBuzzFileWriter() {
+        this(DEFAULT_LINES_PER_WINDOW, 1);
+    }
+
+    /**
+     * @param linesPerWindow the number of lines rendered into one mapped window
+     * @param parallelism the number of windows written concurrently
+     */
+    public FizzBuzzFileWriter(int linesPerWindow, int parallelism) {
+        if (linesPerWindow <= 0 || linesPerWindow > MAX_LINES_PER_WINDOW) {
+            throw new IllegalArgumentException("linesPerWindow must be between 1 and " + MAX_LINES_PER_WINDOW + ": " + linesPerWindow);
+        }
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+
+        this.linesPerWindow = linesPerWindow;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Writes the lines for 1 to {@code count} (inclusive) into the given file,
+     * replacing any existing contents.
+     *
+     * @return the size of the written file
+     */
+    public long write(Path file, long count) throws IOException {
+        return write(file, 1, count + 1);
+    }
+
+    /**
+     * Writes the lines for the numbers from {@code start} (inclusive, positive) to
+     * {@code end} (exclusive) into the given file, replacing any existing contents.
+     *
+     * @return the size of the written file
+     */
+    public long write(Path file, long start, long end) throws IOException {
+        long size = FizzBuzzRenderer.renderedLength(start, end);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            List<Window> windows = new ArrayList<>();
+            long position = 0;
+
+            for (long from = start; from < end; ) {
+                long to = from + Math.min(linesPerWindow, end - from);
+                windows.add(new Window(position, from, to));
+                position += FizzBuzzRenderer.renderedLength(from, to);
+                from = to;
+            }
+
+            if (parallelism == 1 || windows.size() <= 1) {
+                for (Window window : windows) {
+                    window.write(channel);
+                }
+            }
+            else {
+                runInParallel(channel, windows);
+            }
+
+            channel.truncate(size);
+        }
+
+        return size;
+    }
+
+    private record Window(long position, long from, long to) {
+
+        void write(FileChannel channel) throws IOException {
+            int size = (int) FizzBuzzRenderer.renderedLength(from, to);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+
+            new FizzBuzzRenderer(from).render(buffer, to);
+
+            if (buffer.hasRemaining()) {
+                throw new IllegalStateException("Window at " + position + " not filled completely");
+            }
+        }
+    }
+
+    private void runInParallel(FileChannel channel, List<Window> windows) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+
+        List<Callable<Void>> tasks = new ArrayList<>(windows.size());
+        for (Window window : windows) {
+            tasks.add(() -> {
+                window.write(channel);
+                return null;
+            });
+        }
+
+        try {
+            List<Future<Void>> futures = executor.invokeAll(tasks);
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing file");
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException("Couldn't write file", e.getCause());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+}
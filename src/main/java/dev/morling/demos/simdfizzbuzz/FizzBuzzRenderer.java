@@ -0,0 +1,342 @@
+/**
+ *  Copyright 2021 Gunnar Morling
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package dev.morling.demos.simdfizzbuzz;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import java.nio.ByteBuffer;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Renders the FizzBuzz sequence as ASCII text ("1\n2\nFizz\n...") into byte buffers.
+ * <p>
+ * No number is converted via division. Instead, the renderer keeps the output of a
+ * block of 30 lines (lcm(15, 10)) for the current digit width as a template, which
+ * is copied into the target buffer in one go. To move on to the next block, 30 is
+ * added to all the numbers in the template, by adding 3 to their tens digits using
+ * vector operations; carries into higher digits are rare and handled separately.
+ * Lines which don't fill a complete block, e.g. around the digit width boundaries
+ * (9 to 10, 99 to 100, etc.), are rendered from an incrementally updated decimal
+ * counter.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public class FizzBuzzRenderer {
+
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    private static final byte[] FIZZ = "Fizz\n".getBytes(US_ASCII);
+    private static final byte[] BUZZ = "Buzz\n".getBytes(US_ASCII);
+    private static final byte[] FIZZ_BUZZ = "FizzBuzz\n".getBytes(US_ASCII);
+
+    private static final int BLOCK_SIZE = 30;
+    private static final int NUMBERS_PER_BLOCK = 16;
+    private static final int MAX_DIGITS = 19;
+
+    // the labels for the lines of a block starting at a number n with n % 30 == 1;
+    // null for lines showing the number itself
+    private static final byte[][] LABELS = new byte[BLOCK_SIZE][];
+
+    // the summed up length of all the labels of a block
+    private static final int LABELS_LENGTH;
+
+    static {
+        int labelsLength = 0;
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            int value = i + 1;
+            LABELS[i] = value % 15 == 0 ? FIZZ_BUZZ : value % 3 == 0 ? FIZZ : value % 5 == 0 ? BUZZ : null;
+            labelsLength += LABELS[i] != null ? LABELS[i].length : 0;
+        }
+        LABELS_LENGTH = labelsLength;
+    }
+
+    private long next;
+
+    // (next - 1) % 30, i.e. the position of next within its block
+    private int phase;
+
+    // the decimal representation of digitsValue followed by a line break, right-aligned
+    private final byte[] digits = new byte[MAX_DIGITS + 1];
+    private final byte[] counter = new byte[MAX_DIGITS + 1];
+    private int digitsFrom;
+    private long digitsValue;
+
+    private byte[] template;
+    private byte[] increment;
+    private final int[] tensPositions = new int[NUMBERS_PER_BLOCK];
+    private int templateLength;
+    private int templateDigits;
+    private long templateStart;
+
+    /**
+     * Creates a renderer which starts with the line for the given number, which must
+     * be positive.
+     */
+    public FizzBuzzRenderer(long start) {
+        this.digits[MAX_DIGITS] = '\n';
+        reset(start);
+    }
+
+    /**
+     * Makes this renderer continue with the line for the given number, which must be
+     * positive. Allows to render non-consecutive ranges without creating a new
+     * instance for each of them.
+     */
+    public void reset(long start) {
+        if (start < 1) {
+            throw new IllegalArgumentException("start must be positive: " + start);
+        }
+
+        this.next = start;
+        this.phase = (int) ((start - 1) % BLOCK_SIZE);
+        this.digitsValue = -1;
+        this.templateStart = -1;
+    }
+
+    /**
+     * Returns the number whose line will be rendered next.
+     */
+    public long next() {
+        return next;
+    }
+
+    /**
+     * Renders the lines for all numbers from {@link #next()} up to {@code end}
+     * (exclusive), as far as they fit into the given buffer. Only complete lines are
+     * written.
+     *
+     * @return the number of rendered lines
+     */
+    public long render(ByteBuffer out, long end) {
+        long start = next;
+
+        while (next < end) {
+            if (phase == 0 && end - next >= BLOCK_SIZE && prepareTemplate() && out.remaining() >= templateLength) {
+                out.put(template, 0, templateLength);
+                next += BLOCK_SIZE;
+                advanceTemplate();
+            }
+            else if (!renderLine(out)) {
+                break;
+            }
+        }
+
+        return next - start;
+    }
+
+    /**
+     * Returns the number of bytes of the rendered lines for the numbers from
+     * {@code start} (inclusive, positive) to {@code end} (exclusive).
+     */
+    public static long renderedLength(long start, long end) {
+        if (start < 1) {
+            throw new IllegalArgumentException("start must be positive: " + start);
+        }
+
+        long length = 0;
+        long lower = 1;
+
+        for (int width = 1; width <= MAX_DIGITS && lower < end; width++) {
+            long upper = width < MAX_DIGITS ? lower * 10 : Long.MAX_VALUE;
+            long from = Math.max(start, lower);
+            long to = Math.min(end, upper);
+
+            if (from < to) {
+                long fizzBuzz = multiples(from, to, 15);
+                long fizz = multiples(from, to, 3) - fizzBuzz;
+                long buzz = multiples(from, to, 5) - fizzBuzz;
+                long numbers = to - from - fizz - buzz - fizzBuzz;
+
+                length += numbers * (width + 1) + (fizz + buzz) * FIZZ.length + fizzBuzz * FIZZ_BUZZ.length;
+            }
+
+            lower = upper;
+        }
+
+        return length;
+    }
+
+    private static long multiples(long from, long to, int divisor) {
+        return (to - 1) / divisor - (from - 1) / divisor;
+    }
+
+    private boolean renderLine(ByteBuffer out) {
+        byte[] label = LABELS[phase];
+
+        if (label != null) {
+            if (out.remaining() < label.length) {
+                return false;
+            }
+            out.put(label);
+        }
+        else {
+            syncDigits();
+            int length = digits.length - digitsFrom;
+            if (out.remaining() < length) {
+                return false;
+            }
+            out.put(digits, digitsFrom, length);
+        }
+
+        if (digitsValue == next) {
+            incrementDigits();
+        }
+
+        next++;
+        phase++;
+        if (phase == BLOCK_SIZE) {
+            phase = 0;
+        }
+
+        return true;
+    }
+
+    private void syncDigits() {
+        if (digitsValue != next) {
+            // only happens when switching over from the template, not per line
+            byte[] value = Long.toString(next).getBytes(US_ASCII);
+            digitsFrom = MAX_DIGITS - value.length;
+            System.arraycopy(value, 0, digits, digitsFrom, value.length);
+            digitsValue = next;
+        }
+    }
+
+    private void incrementDigits() {
+        int i = MAX_DIGITS - 1;
+        while (i >= digitsFrom && digits[i] == '9') {
+            digits[i] = '0';
+            i--;
+        }
+
+        if (i < digitsFrom) {
+            digits[i] = '1';
+            digitsFrom = i;
+        }
+        else {
+            digits[i]++;
+        }
+
+        digitsValue++;
+    }
+
+    /**
+     * Makes sure the template represents the block starting at {@link #next}, if
+     * all the numbers of that block have the same width of at least two digits.
+     */
+    private boolean prepareTemplate() {
+        if (templateStart == next) {
+            return true;
+        }
+
+        syncDigits();
+        int width = MAX_DIGITS - digitsFrom;
+        if (width < 2 || limit(width) - next < BLOCK_SIZE) {
+            return false;
+        }
+
+        if (width != templateDigits) {
+            templateDigits = width;
+            templateLength = NUMBERS_PER_BLOCK * (width + 1) + LABELS_LENGTH;
+            // padded to full vectors, so that advancing the template needs no tail handling
+            int capacity = (templateLength + SPECIES.length() - 1) / SPECIES.length() * SPECIES.length();
+            template = new byte[capacity];
+            increment = new byte[capacity];
+        }
+
+        System.arraycopy(digits, 0, counter, 0, digits.length);
+        int counterFrom = digitsFrom;
+        int position = 0;
+        int number = 0;
+
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            byte[] label = LABELS[i];
+            if (label != null) {
+                System.arraycopy(label, 0, template, position, label.length);
+                position += label.length;
+            }
+            else {
+                System.arraycopy(counter, counterFrom, template, position, width + 1);
+                tensPositions[number++] = position + width - 2;
+                position += width + 1;
+            }
+
+            // the width doesn't change within the block, so there's no carry beyond the first digit
+            if (i < BLOCK_SIZE - 1) {
+                int j = MAX_DIGITS - 1;
+                while (counter[j] == '9') {
+                    counter[j] = '0';
+                    j--;
+                }
+                counter[j]++;
+            }
+        }
+
+        for (int tensPosition : tensPositions) {
+            increment[tensPosition] = 3;
+        }
+
+        templateStart = next;
+        return true;
+    }
+
+    /**
+     * Moves the template on from the block it currently represents to {@link #next}.
+     */
+    private void advanceTemplate() {
+        if (limit(templateDigits) - next < BLOCK_SIZE) {
+            templateStart = -1;
+            return;
+        }
+
+        boolean carry = false;
+        for (int i = 0; i < template.length; i += SPECIES.length()) {
+            var block = ByteVector.fromArray(SPECIES, template, i)
+                    .add(ByteVector.fromArray(SPECIES, increment, i));
+            block.intoArray(template, i);
+            // tens digits which exceeded '9'; letters and line breaks are outside of that range
+            carry |= block.compare(VectorOperators.GT, (byte) '9')
+                    .and(block.compare(VectorOperators.LT, (byte) 'A'))
+                    .anyTrue();
+        }
+
+        if (carry) {
+            for (int tensPosition : tensPositions) {
+                int i = tensPosition;
+                while (template[i] > '9') {
+                    template[i] -= 10;
+                    i--;
+                    template[i]++;
+                }
+            }
+        }
+
+        templateStart = next;
+    }
+
+    private static long limit(int width) {
+        long limit = 1;
+        for (int i = 0; i < width; i++) {
+            if (limit > Long.MAX_VALUE / 10) {
+                return Long.MAX_VALUE;
+            }
+            limit *= 10;
+        }
+        return limit;
+    }
+}
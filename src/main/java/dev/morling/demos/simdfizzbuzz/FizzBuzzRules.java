@@ -0,0 +1,330 @@
+/**
+ *  Copyright 2021 Gunnar Morling
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package dev.morling.demos.simdfizzbuzz;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * FizzBuzz with an arbitrary set of divisor rules, e.g. 3 -> Fizz, 5 -> Buzz,
+ * 7 -> Bazz. Each element divisible by at least one divisor is replaced by the code
+ * of the matching rules: rule {@code i} (in the order passed in) contributes bit
+ * {@code i}, and the code is the negated sum of these bits. With the rules 3 and 5,
+ * this yields -1, -2 and -3, the codes of {@link FizzBuzz}. {@link #label(int)}
+ * turns a code into text, joining the labels of the matching rules by ascending
+ * priority.
+ * <p>
+ * Like the mask-based {@link FizzBuzz} kernels, {@link #fizzBuzz(int[], int, int[], int, int)}
+ * takes the position of an element as its value. If the period of the rules, i.e.
+ * the lcm of their divisors, is small enough, the masks and codes for one period
+ * (extended to a multiple of the vector length) are computed upfront, so that each
+ * vector takes a load, a blend and a store. For larger periods, such tables would
+ * no longer fit into the caches, and each value is tested for divisibility by each
+ * rule instead, just like {@link #fizzBuzzByValue(int[], int, int[], int, int)}
+ * does.
+ * <p>
+ * Instances are immutable and thread-safe.
+ */
+public class FizzBuzzRules {
+
+    /**
+     * A divisor and the label of the elements divisible by it. Labels of several
+     * matching rules are joined by ascending priority, rules of the same priority in
+     * the order they were passed to {@link FizzBuzzRules#FizzBuzzRules(List)}.
+     */
+    public record Rule(int divisor, String label, int priority) {
+
+        public Rule {
+            if (divisor <= 0) {
+                throw new IllegalArgumentException("divisor must be positive: " + divisor);
+            }
+            Objects.requireNonNull(label, "label");
+        }
+
+        public Rule(int divisor, String label) {
+            this(divisor, label, 0);
+        }
+    }
+
+    /**
+     * The classic rules, 3 -> Fizz and 5 -> Buzz.
+     */
+    public static final List<Rule> FIZZ_BUZZ = List.of(new Rule(3, "Fizz"), new Rule(5, "Buzz"));
+
+    /**
+     * Rule sets with a period (rounded up to a multiple of the vector length) of more
+     * elements than this use the divisibility tests instead of tables.
+     */
+    public static final int MAX_TABLE_PERIOD = 4096;
+
+    // each code is the negated sum of the bits of the matching rules, so with 31 rules
+    // all codes are still negative
+    private static final int MAX_RULES = 31;
+
+    // the labels of all 2^n codes are built upfront for up to this many rules
+    private static final int MAX_CACHED_LABEL_RULES = 8;
+
+    private final List<Rule> rules;
+    private final VectorSpecies<Integer> species;
+    private final long period;
+
+    // per rule, with the divisor being 2^k * m for an odd m: the modular inverse of m,
+    // the largest quotient by m an unsigned int can have, and 2^k - 1; x is divisible
+    // by the divisor if and only if x * inverse, taken as unsigned, doesn't exceed that
+    // quotient and x & (2^k - 1) is 0
+    private final int[] inverses;
+    private final int[] maxQuotients;
+    private final int[] lowBits;
+
+    // the rule indexes by ascending priority
+    private final int[] labelOrder;
+
+    // the labels of all codes, indexed by -code; null if there are too many rules
+    private final String[] labels;
+
+    // the masks and codes for one period, one entry per vector; null if the period is too large
+    private final VectorMask<Integer>[] masks;
+    private final IntVector[] values;
+
+    public FizzBuzzRules(List<Rule> rules) {
+        this(rules, IntVector.SPECIES_PREFERRED);
+    }
+
+    @SuppressWarnings("unchecked")
+    public FizzBuzzRules(List<Rule> rules, VectorSpecies<Integer> species) {
+        if (rules.isEmpty() || rules.size() > MAX_RULES) {
+            throw new IllegalArgumentException("Between 1 and " + MAX_RULES + " rules are supported: " + rules.size());
+        }
+
+        this.rules = List.copyOf(rules);
+        this.species = species;
+        this.inverses = new int[rules.size()];
+        this.maxQuotients = new int[rules.size()];
+        this.lowBits = new int[rules.size()];
+
+        long period = 1;
+        for (int r = 0; r < rules.size(); r++) {
+            int divisor = rules.get(r).divisor();
+            int odd = divisor >>> Integer.numberOfTrailingZeros(divisor);
+            inverses[r] = inverse(odd);
+            maxQuotients[r] = Integer.divideUnsigned(-1, odd);
+            lowBits[r] = Integer.lowestOneBit(divisor) - 1;
+            period = FizzBuzz.saturatedLcm(period, divisor);
+        }
+        this.period = period;
+
+        this.labelOrder = labelOrder(this.rules);
+
+        if (rules.size() <= MAX_CACHED_LABEL_RULES) {
+            this.labels = new String[1 << rules.size()];
+            for (int bits = 1; bits < labels.length; bits++) {
+                labels[bits] = label(this.rules, labelOrder, bits);
+            }
+        }
+        else {
+            this.labels = null;
+        }
+
+        int lanes = species.length();
+        long tablePeriod = FizzBuzz.saturatedLcm(period, lanes);
+
+        if (tablePeriod <= MAX_TABLE_PERIOD) {
+            int tableLength = (int) tablePeriod / lanes;
+            this.masks = new VectorMask[tableLength];
+            this.values = new IntVector[tableLength];
+
+            int[] codes = new int[lanes];
+            for (int i = 0; i < tableLength; i++) {
+                for (int lane = 0; lane < lanes; lane++) {
+                    codes[lane] = code(i * lanes + lane + 1);
+                }
+
+                IntVector v = IntVector.fromArray(species, codes, 0);
+                masks[i] = v.compare(VectorOperators.NE, 0);
+                values[i] = v;
+            }
+        }
+        else {
+            this.masks = null;
+            this.values = null;
+        }
+    }
+
+    public List<Rule> rules() {
+        return rules;
+    }
+
+    /**
+     * Returns the lcm of all divisors, or {@link Long#MAX_VALUE} if that exceeds the
+     * {@code long} range.
+     */
+    public long period() {
+        return period;
+    }
+
+    /**
+     * Whether {@link #fizzBuzz(int[], int, int[], int, int)} uses precomputed tables
+     * rather than testing each value.
+     */
+    public boolean isTableBased() {
+        return masks != null;
+    }
+
+    /**
+     * Returns the text for the given code, i.e. the labels of all matching rules, or
+     * the value itself if it isn't a code. Codes range from -1 to -(2^n - 1) for
+     * n rules, so negative input values within that range can't be told apart from
+     * codes.
+     */
+    public String label(int code) {
+        // -Integer.MIN_VALUE overflows to itself and is rejected as well
+        int bits = -code;
+        if (bits <= 0 || bits >= 1L << rules.size()) {
+            return Integer.toString(code);
+        }
+        return labels != null ? labels[bits] : label(rules, labelOrder, bits);
+    }
+
+    public int[] fizzBuzz(int[] values) {
+        int[] result = new int[values.length];
+        fizzBuzz(values, 0, result, 0, values.length);
+        return result;
+    }
+
+    /**
+     * Writes the results for {@code len} elements of {@code src}, starting at
+     * {@code srcOff}, into {@code dst}, starting at {@code dstOff}; the element at
+     * {@code srcOff} must be 1, the following ones 2, 3, etc., as the results are
+     * derived from the position of each element if possible.
+     */
+    public void fizzBuzz(int[] src, int srcOff, int[] dst, int dstOff, int len) {
+        if (masks == null) {
+            fizzBuzzByValue(src, srcOff, dst, dstOff, len);
+            return;
+        }
+
+        int i = 0;
+        int j = 0;
+
+        int upperBound = species.loopBound(len);
+        for (; i < upperBound; i += species.length()) {
+            IntVector.fromArray(species, src, srcOff + i)
+                    .blend(values[j], masks[j])
+                    .intoArray(dst, dstOff + i);
+            j++;
+            if (j == masks.length) {
+                j = 0;
+            }
+        }
+
+        scalarFizzBuzz(src, srcOff + i, dst, dstOff + i, len - i);
+    }
+
+    public int[] fizzBuzzByValue(int[] values) {
+        int[] result = new int[values.length];
+        fizzBuzzByValue(values, 0, result, 0, values.length);
+        return result;
+    }
+
+    /**
+     * Tests each value itself for divisibility by each rule, so it returns correct
+     * results for arbitrary input, e.g. non-sequential, negative values or 0.
+     */
+    public void fizzBuzzByValue(int[] src, int srcOff, int[] dst, int dstOff, int len) {
+        int i = 0;
+
+        int upperBound = species.loopBound(len);
+        for (; i < upperBound; i += species.length()) {
+            var va = IntVector.fromArray(species, src, srcOff + i);
+            // |Integer.MIN_VALUE| stays 2^31 when taken as unsigned, so abs() is exact for all values
+            var abs = va.abs();
+            // broadcast() rather than IntVector.zero(species), whose vector class C2 can't
+            // tell with a species that isn't a constant, so that it boxes all vectors
+            var codes = va.broadcast(0);
+
+            for (int r = 0; r < inverses.length; r++) {
+                var divisible = abs.mul(inverses[r]).compare(VectorOperators.UNSIGNED_LE, maxQuotients[r])
+                        .and(abs.and(lowBits[r]).compare(VectorOperators.EQ, 0));
+                codes = codes.blend(codes.sub(1 << r), divisible);
+            }
+
+            va.blend(codes, codes.compare(VectorOperators.NE, 0)).intoArray(dst, dstOff + i);
+        }
+
+        scalarFizzBuzz(src, srcOff + i, dst, dstOff + i, len - i);
+    }
+
+    private void scalarFizzBuzz(int[] src, int srcOff, int[] dst, int dstOff, int len) {
+        for (int i = 0; i < len; i++) {
+            int value = src[srcOff + i];
+            int code = code(value);
+            dst[dstOff + i] = code != 0 ? code : value;
+        }
+    }
+
+    /**
+     * Returns the code of the given value, or 0 if no rule matches.
+     */
+    private int code(int value) {
+        int abs = Math.abs(value);
+        int code = 0;
+        for (int r = 0; r < inverses.length; r++) {
+            if (Integer.compareUnsigned(abs * inverses[r], maxQuotients[r]) <= 0 && (abs & lowBits[r]) == 0) {
+                code -= 1 << r;
+            }
+        }
+        return code;
+    }
+
+    private static int[] labelOrder(List<Rule> rules) {
+        List<Integer> byPriority = new ArrayList<>();
+        for (int r = 0; r < rules.size(); r++) {
+            byPriority.add(r);
+        }
+        // stable, so rules of the same priority keep their order
+        byPriority.sort(Comparator.comparingInt(r -> rules.get(r).priority()));
+        return byPriority.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static String label(List<Rule> rules, int[] labelOrder, int bits) {
+        StringBuilder label = new StringBuilder();
+        for (int r : labelOrder) {
+            if ((bits & (1 << r)) != 0) {
+                label.append(rules.get(r).label());
+            }
+        }
+        return label.toString();
+    }
+
+    /**
+     * Returns the inverse of the given odd value mod 2^32, via Newton's method; each
+     * step doubles the number of correct low bits, starting with 3 for x = d.
+     */
+    private static int inverse(int d) {
+        int x = d;
+        for (int i = 0; i < 4; i++) {
+            x *= 2 - d * x;
+        }
+        return x;
+    }
+}
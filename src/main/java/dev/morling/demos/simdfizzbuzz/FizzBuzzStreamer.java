@@ -0,0 +1,221 @@
+/**
+ *  Copyright 2021 Gunnar Morling
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package dev.morling.demos.simdfizzbuzz;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Streams the FizzBuzz text for a range of numbers to a {@link WritableByteChannel},
+ * overlapping rendering and I/O.
+ * <p>
+ * The output is rendered into a ring of reusable direct buffers by one or more
+ * compute threads, while the calling thread writes the filled buffers to the channel
+ * in order. Each buffer holds a fixed number of lines, so the range of each buffer is
+ * known upfront and compute threads can work independently of each other, taking
+ * turns in a round-robin fashion. Compute threads block when all buffers are taken,
+ * i.e. a slow channel applies backpressure. Apart from the compute threads themselves,
+ * nothing gets allocated while streaming.
+ * <p>
+ * Instances are not thread-safe, but may be reused for several ranges.
+ */
+public class FizzBuzzStreamer {
+
+    public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+    public static final int DEFAULT_BUFFERS = 4;
+
+    // at most 19 digits and a line break per line
+    private static final int MAX_LINE_LENGTH = 20;
+
+    private final Slot[] slots;
+    private final int bufferSize;
+    private final int computeThreads;
+
+    public FizzBuzzStreamer() {
+        this(DEFAULT_BUFFER_SIZE, DEFAULT_BUFFERS, 1);
+    }
+
+    /**
+     * @param bufferSize the size of each buffer
+     * @param buffers the minimum number of buffers; rounded up to a multiple of
+     * {@code computeThreads}, so that each buffer is only ever filled by one thread
+     * @param computeThreads the number of threads rendering the output
+     */
+    public FizzBuzzStreamer(int bufferSize, int buffers, int computeThreads) {
+        if (bufferSize < 30 * MAX_LINE_LENGTH) {
+            throw new IllegalArgumentException("bufferSize must be at least " + 30 * MAX_LINE_LENGTH + ": " + bufferSize);
+        }
+        if (buffers < 2) {
+            throw new IllegalArgumentException("At least two buffers are required: " + buffers);
+        }
+        if (computeThreads <= 0) {
+            throw new IllegalArgumentException("computeThreads must be positive: " + computeThreads);
+        }
+
+        this.bufferSize = bufferSize;
+        this.computeThreads = computeThreads;
+        this.slots = new Slot[(buffers + computeThreads - 1) / computeThreads * computeThreads];
+
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Slot(ByteBuffer.allocateDirect(bufferSize));
+        }
+    }
+
+    /**
+     * Writes the lines for the numbers from {@code start} (inclusive, positive) to
+     * {@code end} (exclusive) to the given channel.
+     *
+     * @return the number of bytes written
+     */
+    public long stream(long start, long end, WritableByteChannel channel) throws IOException {
+        if (start < 1) {
+            throw new IllegalArgumentException("start must be positive: " + start);
+        }
+        if (end <= start) {
+            return 0;
+        }
+
+        // all lines of a chunk are guaranteed to fit into one buffer, "FizzBuzz" being
+        // the longest line unless numbers have more than eight digits; keeping the
+        // chunk size a multiple of 30 makes all chunks start at the same phase, which
+        // lets the renderer use its template for complete chunks
+        int maxLineLength = Math.max(Long.toString(end - 1).length(), "FizzBuzz".length()) + 1;
+        long linesPerChunk = bufferSize / maxLineLength / 30 * 30;
+        long chunks = (end - start + linesPerChunk - 1) / linesPerChunk;
+
+        for (Slot slot : slots) {
+            slot.reset();
+        }
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[computeThreads];
+
+        for (int i = 0; i < computeThreads; i++) {
+            int first = i;
+            threads[i] = new Thread(() -> {
+                try {
+                    render(first, chunks, start, end, linesPerChunk);
+                }
+                catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                    // unblock the writer
+                    for (Slot slot : slots) {
+                        slot.filled.release();
+                    }
+                }
+            }, "fizzbuzz-compute-" + i);
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+
+        long written = 0;
+
+        try {
+            for (long chunk = 0; chunk < chunks; chunk++) {
+                Slot slot = slots[(int) (chunk % slots.length)];
+                slot.filled.acquire();
+
+                if (failure.get() != null) {
+                    throw new IllegalStateException("Couldn't render output", failure.get());
+                }
+
+                ByteBuffer buffer = slot.buffer;
+                while (buffer.hasRemaining()) {
+                    written += channel.write(buffer);
+                }
+
+                slot.free.release();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while streaming");
+        }
+        finally {
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+            for (Thread thread : threads) {
+                joinUninterruptibly(thread);
+            }
+        }
+
+        return written;
+    }
+
+    /**
+     * Renders every {@code computeThreads}-th chunk, beginning with the given one.
+     */
+    private void render(int first, long chunks, long start, long end, long linesPerChunk) throws InterruptedException {
+        FizzBuzzRenderer renderer = new FizzBuzzRenderer(start);
+
+        for (long chunk = first; chunk < chunks; chunk += computeThreads) {
+            Slot slot = slots[(int) (chunk % slots.length)];
+            slot.free.acquire();
+
+            long from = start + chunk * linesPerChunk;
+            long to = Math.min(end, from + linesPerChunk);
+
+            ByteBuffer buffer = slot.buffer;
+            buffer.clear();
+            renderer.reset(from);
+            long lines = renderer.render(buffer, to);
+            if (lines != to - from) {
+                throw new IllegalStateException("Rendered " + lines + " of " + (to - from) + " lines into buffer of chunk " + chunk);
+            }
+            buffer.flip();
+
+            slot.filled.release();
+        }
+    }
+
+    private static void joinUninterruptibly(Thread thread) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                thread.join();
+                break;
+            }
+            catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class Slot {
+
+        private final ByteBuffer buffer;
+        private final Semaphore free = new Semaphore(1);
+        private final Semaphore filled = new Semaphore(0);
+
+        Slot(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        void reset() {
+            free.drainPermits();
+            free.release();
+            filled.drainPermits();
+        }
+    }
+}
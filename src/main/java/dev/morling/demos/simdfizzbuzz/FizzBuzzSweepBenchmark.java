@@ -0,0 +1,128 @@
+/**
+ *  Copyright 2021 Gunnar Morling
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package dev.morling.demos.simdfizzbuzz;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Runs the kernels across input sizes from L1-resident to DRAM-bound (input and
+ * output together take 8 bytes per element), including lengths which aren't a
+ * multiple of the vector length, so that tail handling shows up, and with offsets
+ * which misalign the input and output relative to the vector size. Run via
+ * {@link BenchmarkSuite} to get profiler output and JSON results.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FizzBuzzSweepBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class SweepState {
+
+        // ~L1: 256, 1024 (+ odd tails); ~L2: 65536; ~L3: 1M; DRAM: 16M
+        @Param({ "256", "1020", "1024", "1031", "65536", "65543", "1048576", "16777216", "16777223" })
+        public int arrayLength;
+
+        // in ints; 1 and 3 misalign the arrays relative to any vector size
+        @Param({ "0", "1", "3" })
+        public int offset;
+
+        FizzBuzz fizzBuzz;
+        ScalarFizzBuzz scalarFizzBuzz;
+        int[] values;
+        int[] result;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            fizzBuzz = new FizzBuzz();
+            scalarFizzBuzz = new ScalarFizzBuzz();
+            values = new int[arrayLength + offset];
+            System.arraycopy(IntStream.range(1, arrayLength + 1).toArray(), 0, values, offset, arrayLength);
+            result = new int[arrayLength + offset];
+        }
+    }
+
+    @Benchmark
+    public void serialFizzBuzz(SweepState state, Blackhole blackhole) {
+        state.fizzBuzz.serialFizzBuzz(state.values, state.offset, state.result, state.offset, state.arrayLength);
+        blackhole.consume(state.result);
+    }
+
+    @Benchmark
+    public void serialFizzBuzzMasked(SweepState state, Blackhole blackhole) {
+        state.fizzBuzz.serialFizzBuzzMasked(state.values, state.offset, state.result, state.offset, state.arrayLength);
+        blackhole.consume(state.result);
+    }
+
+    @Benchmark
+    public void scalarFizzBuzzUnrolled(SweepState state, Blackhole blackhole) {
+        state.scalarFizzBuzz.fizzBuzz(state.values, state.offset, state.result, state.offset, state.arrayLength);
+        blackhole.consume(state.result);
+    }
+
+    @Benchmark
+    public void simdFizzBuzz(SweepState state, Blackhole blackhole) {
+        state.fizzBuzz.simdFizzBuzz(state.values, state.offset, state.result, state.offset, state.arrayLength);
+        blackhole.consume(state.result);
+    }
+
+    @Benchmark
+    public void simdFizzBuzzSeparateMaskIndex(SweepState state, Blackhole blackhole) {
+        state.fizzBuzz.simdFizzBuzzSeparateMaskIndex(state.values, state.offset, state.result, state.offset, state.arrayLength);
+        blackhole.consume(state.result);
+    }
+
+    @Benchmark
+    public void simdFizzBuzzUnrolled256(SweepState state, Blackhole blackhole) {
+        state.fizzBuzz.simdFizzBuzzUnrolled256(state.values, state.offset, state.result, state.offset, state.arrayLength);
+        blackhole.consume(state.result);
+    }
+
+    @Benchmark
+    public void simdFizzBuzzMasked(SweepState state, Blackhole blackhole) {
+        state.fizzBuzz.simdFizzBuzzMasked(state.values, state.offset, state.result, state.offset, state.arrayLength);
+        blackhole.consume(state.result);
+    }
+
+    @Benchmark
+    public void simdFizzBuzzAnySpecies(SweepState state, Blackhole blackhole) {
+        state.fizzBuzz.simdFizzBuzzAnySpecies(state.values, state.offset, state.result, state.offset, state.arrayLength);
+        blackhole.consume(state.result);
+    }
+
+    @Benchmark
+    public void simdFizzBuzzByValue(SweepState state, Blackhole blackhole) {
+        state.fizzBuzz.simdFizzBuzzByValue(state.values, state.offset, state.result, state.offset, state.arrayLength);
+        blackhole.consume(state.result);
+    }
+
+    @Benchmark
+    public void fizzBuzzRange(SweepState state, Blackhole blackhole) {
+        state.fizzBuzz.fizzBuzzRange(1, state.arrayLength, state.result, state.offset);
+        blackhole.consume(state.result);
+    }
+}
@@ -0,0 +1,348 @@
+/**
+ *  Copyright 2021 Gunnar Morling
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package dev.morling.demos.simdfizzbuzz;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Verifies FizzBuzz output files produced elsewhere, either in the text format of
+ * {@link FizzBuzzFileWriter} or as {@code int} sentinel values like the results of
+ * {@link FizzBuzz}, starting at any number. The file is memory-mapped in windows,
+ * which are verified independently of each other, optionally in parallel. For each
+ * window, the expected output is regenerated block by block, using
+ * {@link FizzBuzzRenderer} respectively {@link FizzBuzz#fizzBuzzRange(long, int, int[])},
+ * and compared with the file contents one vector at a time.
+ * <p>
+ * All methods return the byte offset of the first mismatch within the file, or -1 if
+ * the file matches. A file which ends within an expected line or int is considered
+ * to mismatch at its end.
+ */
+public class FizzBuzzVerifier {
+
+    public static final int DEFAULT_ELEMENTS_PER_WINDOW = 8 * 1024 * 1024;
+
+    // at most 19 digits and a line break per line, keeping each window below 2 GB
+    private static final int MAX_ELEMENTS_PER_WINDOW = Integer.MAX_VALUE / 20;
+
+    // the number of bytes respectively ints regenerated and compared at a time
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    private static final VectorSpecies<Byte> BYTE_SPECIES = ByteVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INT_SPECIES = IntVector.SPECIES_PREFERRED;
+
+    private final FizzBuzz fizzBuzz = new FizzBuzz();
+    private final int elementsPerWindow;
+    private final int parallelism;
+
+    public FizzBuzzVerifier() {
+        this(DEFAULT_ELEMENTS_PER_WINDOW, 1);
+    }
+
+    /**
+     * @param elementsPerWindow the number of lines or ints verified per mapped window
+     * @param parallelism the number of windows verified concurrently
+     */
+    public FizzBuzzVerifier(int elementsPerWindow, int parallelism) {
+        if (elementsPerWindow <= 0 || elementsPerWindow > MAX_ELEMENTS_PER_WINDOW) {
+            throw new IllegalArgumentException("elementsPerWindow must be between 1 and " + MAX_ELEMENTS_PER_WINDOW + ": " + elementsPerWindow);
+        }
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+
+        this.elementsPerWindow = elementsPerWindow;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Verifies that the given file contains the lines for the numbers from
+     * {@code start} (positive) on, as many as fit into the file.
+     *
+     * @return the byte offset of the first mismatch, or -1
+     */
+    public long verifyText(Path file, long start) throws IOException {
+        if (start < 1) {
+            throw new IllegalArgumentException("start must be positive: " + start);
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long end = completeLinesEnd(start, size);
+
+            List<Window> windows = new ArrayList<>();
+            long position = 0;
+
+            for (long from = start; from < end; ) {
+                long to = from + Math.min(elementsPerWindow, end - from);
+                long length = FizzBuzzRenderer.renderedLength(from, to);
+                windows.add(new TextWindow(position, length, from, to));
+                position += length;
+                from = to;
+            }
+
+            // the beginning of the line after the last complete one
+            if (position < size) {
+                windows.add(new TextWindow(position, size - position, end, end + 1));
+            }
+
+            return firstMismatch(channel, windows);
+        }
+    }
+
+    /**
+     * Verifies that the given file contains the {@code int} results for the numbers
+     * from {@code start} on, as many as fit into the file, in the given byte order.
+     *
+     * @return the byte offset of the first mismatch, or -1
+     */
+    public long verifyInts(Path file, int start, ByteOrder order) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long count = size / Integer.BYTES;
+
+            if (start + count - 1 > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("File holds more than the " + (Integer.MAX_VALUE - (long) start + 1)
+                        + " ints from " + start + " to Integer.MAX_VALUE");
+            }
+
+            List<Window> windows = new ArrayList<>();
+            for (long i = 0; i < count; i += elementsPerWindow) {
+                int windowCount = (int) Math.min(elementsPerWindow, count - i);
+                windows.add(new IntWindow(i * Integer.BYTES, windowCount, start + i, order, fizzBuzz));
+            }
+
+            long mismatch = firstMismatch(channel, windows);
+            if (mismatch == -1 && size % Integer.BYTES != 0) {
+                return count * Integer.BYTES;
+            }
+            return mismatch;
+        }
+    }
+
+    /**
+     * Returns the largest number such that the lines from {@code start} up to it
+     * (exclusive) don't take more than {@code size} bytes.
+     */
+    private static long completeLinesEnd(long start, long size) {
+        // each line takes at least two bytes
+        long low = start;
+        long high = start + size / 2 + 1;
+
+        while (low < high) {
+            long mid = low + (high - low + 1) / 2;
+            if (FizzBuzzRenderer.renderedLength(start, mid) <= size) {
+                low = mid;
+            }
+            else {
+                high = mid - 1;
+            }
+        }
+
+        return low;
+    }
+
+    private long firstMismatch(FileChannel channel, List<Window> windows) throws IOException {
+        if (parallelism == 1 || windows.size() <= 1) {
+            for (Window window : windows) {
+                long mismatch = window.verify(channel);
+                if (mismatch != -1) {
+                    return mismatch;
+                }
+            }
+            return -1;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+
+        // windows after a known mismatch don't need to be verified
+        AtomicLong first = new AtomicLong(Long.MAX_VALUE);
+        List<Callable<Long>> tasks = new ArrayList<>(windows.size());
+        for (Window window : windows) {
+            tasks.add(() -> {
+                if (window.position() > first.get()) {
+                    return -1L;
+                }
+                long mismatch = window.verify(channel);
+                if (mismatch != -1) {
+                    first.accumulateAndGet(mismatch, Math::min);
+                }
+                return mismatch;
+            });
+        }
+
+        try {
+            long mismatch = Long.MAX_VALUE;
+            for (Future<Long> future : executor.invokeAll(tasks)) {
+                long windowMismatch = future.get();
+                if (windowMismatch != -1) {
+                    mismatch = Math.min(mismatch, windowMismatch);
+                }
+            }
+            return mismatch == Long.MAX_VALUE ? -1 : mismatch;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while verifying file");
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException("Couldn't verify file", e.getCause());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the index of the first byte differing between {@code actual}, starting
+     * at {@code offset}, and {@code expected}, or -1.
+     */
+    static int mismatch(ByteBuffer actual, int offset, byte[] expected, int len) {
+        int i = 0;
+
+        int upperBound = BYTE_SPECIES.loopBound(len);
+        for (; i < upperBound; i += BYTE_SPECIES.length()) {
+            var va = ByteVector.fromByteBuffer(BYTE_SPECIES, actual, offset + i, ByteOrder.nativeOrder());
+            var different = va.compare(VectorOperators.NE, ByteVector.fromArray(BYTE_SPECIES, expected, i));
+            if (different.anyTrue()) {
+                return i + different.firstTrue();
+            }
+        }
+
+        for (; i < len; i++) {
+            if (actual.get(offset + i) != expected[i]) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the index of the first int differing between {@code actual}, starting at
+     * byte {@code offset} and read in the buffer's byte order, and {@code expected}, or
+     * -1.
+     */
+    static int mismatch(ByteBuffer actual, int offset, int[] expected, int len) {
+        ByteOrder order = actual.order();
+        int i = 0;
+
+        int upperBound = INT_SPECIES.loopBound(len);
+        for (; i < upperBound; i += INT_SPECIES.length()) {
+            var va = IntVector.fromByteBuffer(INT_SPECIES, actual, offset + i * Integer.BYTES, order);
+            var different = va.compare(VectorOperators.NE, IntVector.fromArray(INT_SPECIES, expected, i));
+            if (different.anyTrue()) {
+                return i + different.firstTrue();
+            }
+        }
+
+        for (; i < len; i++) {
+            if (actual.getInt(offset + i * Integer.BYTES) != expected[i]) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private interface Window {
+
+        long position();
+
+        /**
+         * Returns the byte offset of the first mismatch within the file, or -1.
+         */
+        long verify(FileChannel channel) throws IOException;
+    }
+
+    /**
+     * The lines for the numbers {@code [from, to)}, of which only the first
+     * {@code length} bytes are in the file if it ends within them.
+     */
+    private record TextWindow(long position, long length, long from, long to) implements Window {
+
+        @Override
+        public long verify(FileChannel channel) throws IOException {
+            MappedByteBuffer actual = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            byte[] expected = new byte[BLOCK_SIZE];
+            ByteBuffer expectedBuffer = ByteBuffer.wrap(expected);
+            FizzBuzzRenderer renderer = new FizzBuzzRenderer(from);
+
+            int verified = 0;
+            while (verified < length) {
+                expectedBuffer.clear();
+                renderer.render(expectedBuffer, to);
+
+                int blockLength = (int) Math.min(expectedBuffer.position(), length - verified);
+                int mismatch = mismatch(actual, verified, expected, blockLength);
+                if (mismatch != -1) {
+                    return position + verified + mismatch;
+                }
+
+                verified += blockLength;
+            }
+
+            return length < FizzBuzzRenderer.renderedLength(from, to) ? position + length : -1;
+        }
+    }
+
+    /**
+     * The results for the {@code count} numbers from {@code from} on.
+     */
+    private record IntWindow(long position, int count, long from, ByteOrder order, FizzBuzz fizzBuzz) implements Window {
+
+        @Override
+        public long verify(FileChannel channel) throws IOException {
+            MappedByteBuffer actual = channel.map(FileChannel.MapMode.READ_ONLY, position, (long) count * Integer.BYTES);
+            actual.order(order);
+            int[] expected = new int[Math.min(count, BLOCK_SIZE)];
+
+            for (int i = 0; i < count; i += expected.length) {
+                int blockLength = Math.min(expected.length, count - i);
+                fizzBuzz.fizzBuzzRange(from + i, blockLength, expected);
+
+                int mismatch = mismatch(actual, i * Integer.BYTES, expected, blockLength);
+                if (mismatch != -1) {
+                    return position + (long) (i + mismatch) * Integer.BYTES;
+                }
+            }
+
+            return -1;
+        }
+    }
+}
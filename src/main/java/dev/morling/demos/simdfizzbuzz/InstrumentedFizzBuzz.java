@@ -0,0 +1,197 @@
+/**
+ *  Copyright 2021 Gunnar Morling
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package dev.morling.demos.simdfizzbuzz;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * A {@link FizzBuzz} which records each invocation of its {@code int[]} kernels: as a
+ * {@link FizzBuzzEvent} JFR event with kernel, length, tail length and duration, and
+ * in per-kernel counters and latency histograms, available via {@link #snapshot()}.
+ * The tail length is the number of elements processed by scalar code rather than
+ * the vector loop. Instrumentation is enabled by using this class instead of
+ * {@link FizzBuzz}, whose kernels remain unchanged.
+ */
+public class InstrumentedFizzBuzz extends FizzBuzz {
+
+    /**
+     * The metrics of one kernel at one point in time.
+     */
+    public record KernelSnapshot(long calls, long elements, long tailElements, long totalNanos, LatencyHistogram.Snapshot latencies) {
+    }
+
+    private final KernelMetrics serial = new KernelMetrics("serialFizzBuzz");
+    private final KernelMetrics serialMasked = new KernelMetrics("serialFizzBuzzMasked");
+    private final KernelMetrics simd = new KernelMetrics("simdFizzBuzz");
+    private final KernelMetrics simdMasksInArray = new KernelMetrics("simdFizzBuzzMasksInArray");
+    private final KernelMetrics simdSeparateMaskIndex = new KernelMetrics("simdFizzBuzzSeparateMaskIndex");
+    private final KernelMetrics simdMasked = new KernelMetrics("simdFizzBuzzMasked");
+    private final KernelMetrics simdUnrolled256 = new KernelMetrics("simdFizzBuzzUnrolled256");
+    private final KernelMetrics simdAnySpecies = new KernelMetrics("simdFizzBuzzAnySpecies");
+    private final KernelMetrics simdPreferred = new KernelMetrics("simdFizzBuzzPreferred");
+    private final KernelMetrics simdByValue = new KernelMetrics("simdFizzBuzzByValue");
+    private final KernelMetrics range = new KernelMetrics("fizzBuzzRange");
+    private final KernelMetrics simd256 = new KernelMetrics("simdFizzBuzz256");
+    private final KernelMetrics simd128 = new KernelMetrics("simdFizzBuzz128");
+
+    private final List<KernelMetrics> kernels = List.of(serial, serialMasked, simd, simdMasksInArray, simdSeparateMaskIndex,
+            simdMasked, simdUnrolled256, simdAnySpecies, simdPreferred, simdByValue, range, simd256, simd128);
+
+    public InstrumentedFizzBuzz() {
+        super();
+    }
+
+    public InstrumentedFizzBuzz(VectorSpecies<Integer> species) {
+        super(species);
+    }
+
+    /**
+     * Returns the metrics of all kernels, keyed by method name; values recorded
+     * concurrently may or may not be reflected.
+     */
+    public Map<String, KernelSnapshot> snapshot() {
+        Map<String, KernelSnapshot> snapshot = new LinkedHashMap<>();
+        for (KernelMetrics kernel : kernels) {
+            snapshot.put(kernel.name, kernel.snapshot());
+        }
+        return snapshot;
+    }
+
+    @Override
+    public void serialFizzBuzz(int[] src, int srcOff, int[] dst, int dstOff, int len) {
+        serial.record(len, len, () -> super.serialFizzBuzz(src, srcOff, dst, dstOff, len));
+    }
+
+    @Override
+    public void serialFizzBuzzMasked(int[] src, int srcOff, int[] dst, int dstOff, int len) {
+        serialMasked.record(len, len, () -> super.serialFizzBuzzMasked(src, srcOff, dst, dstOff, len));
+    }
+
+    @Override
+    public void simdFizzBuzz(int[] src, int srcOff, int[] dst, int dstOff, int len) {
+        simd.record(len, len % IntVector.SPECIES_256.length(), () -> super.simdFizzBuzz(src, srcOff, dst, dstOff, len));
+    }
+
+    @Override
+    public void simdFizzBuzzMasksInArray(int[] src, int srcOff, int[] dst, int dstOff, int len) {
+        simdMasksInArray.record(len, len % IntVector.SPECIES_256.length(),
+                () -> super.simdFizzBuzzMasksInArray(src, srcOff, dst, dstOff, len));
+    }
+
+    @Override
+    public void simdFizzBuzzSeparateMaskIndex(int[] src, int srcOff, int[] dst, int dstOff, int len) {
+        simdSeparateMaskIndex.record(len, len % IntVector.SPECIES_256.length(),
+                () -> super.simdFizzBuzzSeparateMaskIndex(src, srcOff, dst, dstOff, len));
+    }
+
+    @Override
+    public void simdFizzBuzzMasked(int[] src, int srcOff, int[] dst, int dstOff, int len) {
+        // the last, partial vector is processed with a mask rather than scalar code
+        simdMasked.record(len, 0, () -> super.simdFizzBuzzMasked(src, srcOff, dst, dstOff, len));
+    }
+
+    @Override
+    public void simdFizzBuzzUnrolled256(int[] src, int srcOff, int[] dst, int dstOff, int len) {
+        // the elements after the last super-block are processed with masks rather than scalar code
+        simdUnrolled256.record(len, 0, () -> super.simdFizzBuzzUnrolled256(src, srcOff, dst, dstOff, len));
+    }
+
+    @Override
+    public void simdFizzBuzzAnySpecies(int[] src, int srcOff, int[] dst, int dstOff, int len) {
+        simdAnySpecies.record(len, len - species().loopBound(len),
+                () -> super.simdFizzBuzzAnySpecies(src, srcOff, dst, dstOff, len));
+    }
+
+    @Override
+    public void simdFizzBuzzPreferred(int[] src, int srcOff, int[] dst, int dstOff, int len) {
+        simdPreferred.record(len, len - IntVector.SPECIES_PREFERRED.loopBound(len),
+                () -> super.simdFizzBuzzPreferred(src, srcOff, dst, dstOff, len));
+    }
+
+    @Override
+    public void simdFizzBuzzByValue(int[] src, int srcOff, int[] dst, int dstOff, int len) {
+        simdByValue.record(len, len - species().loopBound(len),
+                () -> super.simdFizzBuzzByValue(src, srcOff, dst, dstOff, len));
+    }
+
+    @Override
+    public void fizzBuzzRange(long start, int count, int[] dst, int dstOff) {
+        // the elements before the first vector boundary of the mask table, and after the last one
+        int lanes = species().length();
+        int position = (int) Math.floorMod(start - 1, (long) period());
+        int prologue = Math.min(count, (lanes - position % lanes) % lanes);
+        range.record(count, prologue + (count - prologue) % lanes, () -> super.fizzBuzzRange(start, count, dst, dstOff));
+    }
+
+    @Override
+    public void simdFizzBuzz256(int[] src, int srcOff, int[] dst, int dstOff, int len) {
+        simd256.record(len, len % 15, () -> super.simdFizzBuzz256(src, srcOff, dst, dstOff, len));
+    }
+
+    @Override
+    void simdFizzBuzz128(int[] src, int srcOff, int[] dst, int dstOff, int len) {
+        simd128.record(len, len % 15, () -> super.simdFizzBuzz128(src, srcOff, dst, dstOff, len));
+    }
+
+    private static class KernelMetrics {
+
+        private final String name;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder elements = new LongAdder();
+        private final LongAdder tailElements = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LatencyHistogram latencies = new LatencyHistogram();
+
+        KernelMetrics(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Runs the given kernel invocation and records it.
+         */
+        void record(int length, int tailLength, Runnable kernel) {
+            FizzBuzzEvent event = new FizzBuzzEvent();
+            event.begin();
+            long start = System.nanoTime();
+            kernel.run();
+            long duration = System.nanoTime() - start;
+            event.end();
+
+            calls.increment();
+            elements.add(length);
+            tailElements.add(tailLength);
+            nanos.add(duration);
+            latencies.record(duration);
+
+            if (event.shouldCommit()) {
+                event.kernel = name;
+                event.length = length;
+                event.tailLength = tailLength;
+                event.commit();
+            }
+        }
+
+        KernelSnapshot snapshot() {
+            return new KernelSnapshot(calls.sum(), elements.sum(), tailElements.sum(), nanos.sum(), latencies.snapshot());
+        }
+    }
+}
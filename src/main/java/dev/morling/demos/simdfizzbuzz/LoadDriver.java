@@ -0,0 +1,546 @@
+/**
+ *  Copyright 2021 Gunnar Morling
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package dev.morling.demos.simdfizzbuzz;
+
+import java.io.IOException;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+/**
+ * Runs one FizzBuzz kernel in a loop on a number of threads, outside of JMH, e.g. for
+ * sizing hosts or reproducing latency problems under different JVM flags. Each thread
+ * processes the values 1 to {@code size} per call, first for a warm-up phase, then for
+ * the measured steady-state phase, each given as a number of calls per thread or a
+ * duration. Usage:
+ *
+ * <pre>
+ * java --add-modules=jdk.incubator.vector -cp target/classes dev.morling.demos.simdfizzbuzz.Main \
+ *     [--kernel &lt;name&gt;] [--size &lt;n&gt;] [--threads &lt;n&gt;] [--iterations &lt;n&gt; | --duration &lt;seconds&gt;]
+ *     [--warmup-iterations &lt;n&gt; | --warmup-duration &lt;seconds&gt;] [--sink blackhole|checksum|&lt;file&gt;]
+ *     [--output &lt;file&gt;]
+ * </pre>
+ *
+ * The kernel is one of {@link FizzBuzzEngine.Kernel} (case-insensitive) or
+ * {@code engine} for {@link FizzBuzzEngine}. The results of each call are passed to
+ * the sink: {@code blackhole} just publishes the result arrays, {@code checksum} sums
+ * up all results, and any other value is taken as the path of a file, to which all
+ * threads append their results as little-endian ints.
+ * <p>
+ * The report, written as JSON to stdout or the given output file, contains the time
+ * from driver start to the first result of each thread, including the
+ * {@link FizzBuzz} constructor and class initialization, the time spent in JIT
+ * compilation, and per thread the throughput and latency percentiles of both
+ * phases. Latencies are the intervals between the ends of consecutive calls, so they
+ * include the sink and one {@link System#nanoTime()} invocation.
+ */
+public class LoadDriver {
+
+    private static final double[] PERCENTILES = { 50, 90, 99, 99.9, 99.99 };
+
+    // keeps the result arrays reachable, so that the JIT can't eliminate the kernel stores
+    static volatile int[][] blackhole;
+
+    private final Options options;
+
+    /**
+     * The options of one run; by default, the workload of the former {@code Main}:
+     * {@link FizzBuzz#simdFizzBuzz(int[])} over 256 values, 5,000,000 times.
+     * Iterations are per thread; a duration, if given, takes precedence over the
+     * iterations of the same phase.
+     */
+    public record Options(String kernel, int size, int threads, long iterations, Duration duration,
+                          long warmupIterations, Duration warmupDuration, String sink, Path output) {
+
+        public static final String DEFAULT_KERNEL = "simd";
+        public static final int DEFAULT_SIZE = 256;
+        public static final long DEFAULT_ITERATIONS = 5_000_000;
+
+        public Options {
+            if (size <= 0) {
+                throw new IllegalArgumentException("size must be positive: " + size);
+            }
+            if (threads <= 0) {
+                throw new IllegalArgumentException("threads must be positive: " + threads);
+            }
+            if (iterations <= 0 && duration == null) {
+                throw new IllegalArgumentException("Either iterations or duration must be given");
+            }
+        }
+
+        public static Options defaults() {
+            return parse(new String[0]);
+        }
+
+        /**
+         * Parses the given command line options. If no warm-up is given, it is 10% of
+         * the steady-state phase.
+         */
+        public static Options parse(String[] args) {
+            String kernel = DEFAULT_KERNEL;
+            int size = DEFAULT_SIZE;
+            int threads = 1;
+            long iterations = DEFAULT_ITERATIONS;
+            Duration duration = null;
+            long warmupIterations = -1;
+            Duration warmupDuration = null;
+            String sink = "blackhole";
+            Path output = null;
+
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--kernel" -> kernel = args[++i];
+                    case "--size" -> size = Integer.parseInt(args[++i]);
+                    case "--threads" -> threads = Integer.parseInt(args[++i]);
+                    case "--iterations" -> iterations = Long.parseLong(args[++i]);
+                    case "--duration" -> duration = seconds(args[++i]);
+                    case "--warmup-iterations" -> warmupIterations = Long.parseLong(args[++i]);
+                    case "--warmup-duration" -> warmupDuration = seconds(args[++i]);
+                    case "--sink" -> sink = args[++i];
+                    case "--output" -> output = Path.of(args[++i]);
+                    default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+
+            if (warmupIterations == -1 && warmupDuration == null) {
+                if (duration != null) {
+                    warmupDuration = duration.dividedBy(10);
+                }
+                else {
+                    warmupIterations = iterations / 10;
+                }
+            }
+
+            return new Options(kernel, size, threads, iterations, duration, Math.max(warmupIterations, 0), warmupDuration,
+                    sink, output);
+        }
+
+        private static Duration seconds(String value) {
+            return Duration.ofNanos((long) (Double.parseDouble(value) * 1e9));
+        }
+    }
+
+    /**
+     * A kernel of type {@code (int[], int, int[], int, int)void}.
+     */
+    @FunctionalInterface
+    interface Kernel {
+        void fizzBuzz(int[] src, int srcOff, int[] dst, int dstOff, int len);
+    }
+
+    /**
+     * Receives the results of each call on one thread.
+     */
+    interface Sink {
+        void accept(int[] results) throws IOException;
+
+        default long checksum() {
+            return 0;
+        }
+    }
+
+    /**
+     * The calls of one phase on one thread.
+     */
+    public record Phase(long iterations, long nanos, LatencyHistogram.Snapshot latencies) {
+
+        public double callsPerSecond() {
+            return nanos == 0 ? 0 : iterations * 1e9 / nanos;
+        }
+    }
+
+    public record ThreadReport(int thread, long firstResultNanos, Phase warmup, Phase steadyState, long checksum) {
+    }
+
+    public record Report(Options options, long jvmUptimeAtStartMillis, long constructionNanos, List<ThreadReport> threads,
+                         long jitMillisAtStart, long jitMillisAfterWarmup, long jitMillisAtEnd, long nanos) {
+
+        public long firstResultNanos() {
+            return threads.stream().mapToLong(ThreadReport::firstResultNanos).min().orElse(0);
+        }
+
+        public double steadyStateCallsPerSecond() {
+            return threads.stream().mapToDouble(t -> t.steadyState().callsPerSecond()).sum();
+        }
+
+        /**
+         * Returns the steady-state latencies of all threads combined.
+         */
+        public LatencyHistogram.Snapshot steadyStateLatencies() {
+            long[] counts = new long[LatencyHistogram.BUCKETS];
+            for (ThreadReport thread : threads) {
+                long[] threadCounts = thread.steadyState().latencies().counts();
+                for (int i = 0; i < counts.length; i++) {
+                    counts[i] += threadCounts[i];
+                }
+            }
+            return new LatencyHistogram.Snapshot(counts);
+        }
+
+        public String toJson() {
+            Map<String, Object> json = new LinkedHashMap<>();
+
+            Map<String, Object> config = new LinkedHashMap<>();
+            config.put("kernel", options.kernel());
+            config.put("size", options.size());
+            config.put("threads", options.threads());
+            config.put("iterations", options.duration() != null ? null : options.iterations());
+            config.put("durationSeconds", options.duration() != null ? options.duration().toNanos() / 1e9 : null);
+            config.put("warmupIterations", options.warmupDuration() != null ? null : options.warmupIterations());
+            config.put("warmupDurationSeconds", options.warmupDuration() != null ? options.warmupDuration().toNanos() / 1e9 : null);
+            config.put("sink", options.sink());
+            config.put("jvm", System.getProperty("java.vm.name") + " " + System.getProperty("java.vm.version"));
+            config.put("jvmArguments", ManagementFactory.getRuntimeMXBean().getInputArguments());
+            config.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+            json.put("config", config);
+
+            Map<String, Object> coldStart = new LinkedHashMap<>();
+            coldStart.put("jvmUptimeAtStartMillis", jvmUptimeAtStartMillis);
+            coldStart.put("constructionNanos", constructionNanos);
+            coldStart.put("firstResultNanos", firstResultNanos());
+            coldStart.put("jitMillisAtStart", jitMillisAtStart);
+            coldStart.put("jitMillisDuringWarmup", jitMillisAfterWarmup - jitMillisAtStart);
+            coldStart.put("jitMillisDuringSteadyState", jitMillisAtEnd - jitMillisAfterWarmup);
+            json.put("coldStart", coldStart);
+
+            Map<String, Object> steadyState = new LinkedHashMap<>();
+            steadyState.put("callsPerSecond", steadyStateCallsPerSecond());
+            steadyState.put("elementsPerSecond", steadyStateCallsPerSecond() * options.size());
+            steadyState.put("latencyNanos", latencies(steadyStateLatencies()));
+            json.put("steadyState", steadyState);
+
+            List<Object> threadsJson = new ArrayList<>();
+            for (ThreadReport thread : threads) {
+                Map<String, Object> threadJson = new LinkedHashMap<>();
+                threadJson.put("thread", thread.thread());
+                threadJson.put("firstResultNanos", thread.firstResultNanos());
+                threadJson.put("warmup", phase(thread.warmup()));
+                threadJson.put("steadyState", phase(thread.steadyState()));
+                if ("checksum".equals(options.sink())) {
+                    threadJson.put("checksum", thread.checksum());
+                }
+                threadsJson.add(threadJson);
+            }
+            json.put("threads", threadsJson);
+            json.put("totalNanos", nanos);
+
+            StringBuilder builder = new StringBuilder();
+            write(json, builder, "");
+            return builder.append('\n').toString();
+        }
+
+        private Map<String, Object> phase(Phase phase) {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("iterations", phase.iterations());
+            json.put("nanos", phase.nanos());
+            json.put("callsPerSecond", phase.callsPerSecond());
+            json.put("elementsPerSecond", phase.callsPerSecond() * options.size());
+            json.put("latencyNanos", latencies(phase.latencies()));
+            return json;
+        }
+
+        private static Map<String, Object> latencies(LatencyHistogram.Snapshot snapshot) {
+            Map<String, Object> json = new LinkedHashMap<>();
+            for (double percentile : PERCENTILES) {
+                json.put("p" + (percentile == (long) percentile ? String.valueOf((long) percentile) : String.valueOf(percentile)),
+                        snapshot.valueAtPercentile(percentile));
+            }
+            json.put("max", snapshot.max());
+            return json;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static void write(Object value, StringBuilder builder, String indent) {
+            if (value instanceof Map) {
+                Map<String, Object> map = (Map<String, Object>) value;
+                builder.append("{\n");
+                int i = 0;
+                for (Map.Entry<String, Object> entry : map.entrySet()) {
+                    builder.append(indent).append("  ");
+                    string(entry.getKey(), builder);
+                    builder.append(": ");
+                    write(entry.getValue(), builder, indent + "  ");
+                    builder.append(++i < map.size() ? ",\n" : "\n");
+                }
+                builder.append(indent).append('}');
+            }
+            else if (value instanceof List) {
+                List<Object> list = (List<Object>) value;
+                builder.append('[');
+                for (int i = 0; i < list.size(); i++) {
+                    if (i > 0) {
+                        builder.append(", ");
+                    }
+                    write(list.get(i), builder, indent);
+                }
+                builder.append(']');
+            }
+            else if (value instanceof Double) {
+                double d = (Double) value;
+                builder.append(Double.isFinite(d) ? String.format(Locale.ROOT, "%.3f", d) : "null");
+            }
+            else if (value instanceof Number || value instanceof Boolean || value == null) {
+                builder.append(value);
+            }
+            else {
+                string(value.toString(), builder);
+            }
+        }
+
+        private static void string(String value, StringBuilder builder) {
+            builder.append('"');
+            for (char c : value.toCharArray()) {
+                switch (c) {
+                    case '"' -> builder.append("\\\"");
+                    case '\\' -> builder.append("\\\\");
+                    case '\n' -> builder.append("\\n");
+                    default -> {
+                        if (c < 0x20) {
+                            builder.append(String.format("\\u%04x", (int) c));
+                        }
+                        else {
+                            builder.append(c);
+                        }
+                    }
+                }
+            }
+            builder.append('"');
+        }
+    }
+
+    public LoadDriver(Options options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        Report report = new LoadDriver(options).run();
+
+        if (options.output() != null) {
+            Files.writeString(options.output(), report.toJson());
+        }
+        else {
+            System.out.print(report.toJson());
+        }
+    }
+
+    public Report run() throws IOException, InterruptedException {
+        long jvmUptime = ManagementFactory.getRuntimeMXBean().getUptime();
+        long begin = System.nanoTime();
+        long jitAtStart = jitMillis();
+
+        Kernel kernel = kernel(options.kernel());
+        long constructionNanos = System.nanoTime() - begin;
+
+        int threads = options.threads();
+        blackhole = new int[threads][];
+        FileChannel file = isFileSink() ? FileChannel.open(Path.of(options.sink()), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING) : null;
+
+        // all threads start their warm-up together, and their steady state once all are warm
+        CyclicBarrier start = new CyclicBarrier(threads);
+        long[] jitAfterWarmup = new long[1];
+        CyclicBarrier warm = new CyclicBarrier(threads, () -> jitAfterWarmup[0] = jitMillis());
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CompletionService<ThreadReport> completion = new ExecutorCompletionService<>(executor);
+        try {
+            List<Future<ThreadReport>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                int thread = i;
+                futures.add(completion.submit(() -> runThread(thread, kernel, sink(thread, file), begin, start, warm)));
+            }
+
+            // in the order of completion, so that a failure is reported right away rather
+            // than after the threads waiting for the failed one at a barrier
+            ThreadReport[] reports = new ThreadReport[threads];
+            for (int i = 0; i < threads; i++) {
+                Future<ThreadReport> future = completion.take();
+                try {
+                    ThreadReport report = future.get();
+                    reports[report.thread()] = report;
+                }
+                catch (ExecutionException e) {
+                    for (Future<ThreadReport> other : futures) {
+                        other.cancel(true);
+                    }
+                    start.reset();
+                    warm.reset();
+                    throw e;
+                }
+            }
+
+            return new Report(options, jvmUptime, constructionNanos, List.of(reports), jitAtStart, jitAfterWarmup[0], jitMillis(),
+                    System.nanoTime() - begin);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException("Load driver thread failed", e.getCause());
+        }
+        finally {
+            executor.shutdownNow();
+            if (file != null) {
+                file.close();
+            }
+        }
+    }
+
+    private ThreadReport runThread(int thread, Kernel kernel, Sink sink, long begin, CyclicBarrier start, CyclicBarrier warm)
+            throws Exception {
+        int size = options.size();
+        int[] src = IntStream.rangeClosed(1, size).toArray();
+        int[] dst = new int[size];
+        blackhole[thread] = dst;
+
+        start.await();
+
+        kernel.fizzBuzz(src, 0, dst, 0, size);
+        sink.accept(dst);
+        long firstResultNanos = System.nanoTime() - begin;
+
+        Phase warmup = phase(kernel, sink, src, dst, options.warmupIterations(), options.warmupDuration());
+        warm.await();
+        Phase steadyState = phase(kernel, sink, src, dst, options.iterations(), options.duration());
+
+        return new ThreadReport(thread, firstResultNanos, warmup, steadyState, sink.checksum());
+    }
+
+    private static Phase phase(Kernel kernel, Sink sink, int[] src, int[] dst, long iterations, Duration duration) throws IOException {
+        LatencyHistogram latencies = new LatencyHistogram();
+        long maxIterations = duration != null ? Long.MAX_VALUE : iterations;
+        long maxNanos = duration != null ? duration.toNanos() : Long.MAX_VALUE;
+        int size = src.length;
+
+        long begin = System.nanoTime();
+        long previous = begin;
+        long i = 0;
+
+        while (i < maxIterations && previous - begin < maxNanos) {
+            kernel.fizzBuzz(src, 0, dst, 0, size);
+            sink.accept(dst);
+
+            long now = System.nanoTime();
+            latencies.record(now - previous);
+            previous = now;
+            i++;
+        }
+
+        return new Phase(i, previous - begin, latencies.snapshot());
+    }
+
+    /**
+     * Returns the given kernel; {@link FizzBuzz} is only instantiated for the vector
+     * kernels, so that {@link FizzBuzzEngine.Kernel#SCALAR_UNROLLED} can be run without
+     * the Vector API.
+     */
+    static Kernel kernel(String name) {
+        if ("engine".equalsIgnoreCase(name)) {
+            FizzBuzzEngine.profile();
+            return FizzBuzzEngine::fizzBuzz;
+        }
+
+        FizzBuzzEngine.Kernel kernel = FizzBuzzEngine.Kernel.valueOf(name.toUpperCase(Locale.ROOT));
+        if (kernel == FizzBuzzEngine.Kernel.SCALAR_UNROLLED) {
+            return new ScalarFizzBuzz()::fizzBuzz;
+        }
+
+        FizzBuzz fizzBuzz = new FizzBuzz();
+        return switch (kernel) {
+            case SERIAL -> fizzBuzz::serialFizzBuzz;
+            case SERIAL_MASKED -> fizzBuzz::serialFizzBuzzMasked;
+            case SIMD -> fizzBuzz::simdFizzBuzz;
+            case SIMD_MASKS_IN_ARRAY -> fizzBuzz::simdFizzBuzzMasksInArray;
+            case SIMD_SEPARATE_MASK_INDEX -> fizzBuzz::simdFizzBuzzSeparateMaskIndex;
+            case SIMD_MASKED -> fizzBuzz::simdFizzBuzzMasked;
+            case SIMD_UNROLLED_256 -> fizzBuzz::simdFizzBuzzUnrolled256;
+            case SIMD_256 -> fizzBuzz::simdFizzBuzz256;
+            case SIMD_128 -> fizzBuzz::simdFizzBuzz128;
+            case SIMD_ANY_SPECIES -> fizzBuzz::simdFizzBuzzAnySpecies;
+            case SCALAR_UNROLLED -> throw new IllegalStateException();
+        };
+    }
+
+    private boolean isFileSink() {
+        return !"blackhole".equals(options.sink()) && !"checksum".equals(options.sink());
+    }
+
+    /**
+     * Returns the sink of the given thread, writing to the given file if the sink is
+     * a file.
+     */
+    Sink sink(int thread, FileChannel file) {
+        if ("blackhole".equals(options.sink())) {
+            return results -> {
+            };
+        }
+        else if ("checksum".equals(options.sink())) {
+            return new Sink() {
+
+                private long checksum;
+
+                @Override
+                public void accept(int[] results) {
+                    long sum = 0;
+                    for (int result : results) {
+                        sum += result;
+                    }
+                    checksum += sum;
+                }
+
+                @Override
+                public long checksum() {
+                    return checksum;
+                }
+            };
+        }
+        else {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(options.size() * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            return results -> {
+                buffer.clear();
+                buffer.asIntBuffer().put(results);
+                while (buffer.hasRemaining()) {
+                    file.write(buffer);
+                }
+            };
+        }
+    }
+
+    private static long jitMillis() {
+        CompilationMXBean compilation = ManagementFactory.getCompilationMXBean();
+        return compilation != null && compilation.isCompilationTimeMonitoringSupported() ? compilation.getTotalCompilationTime() : -1;
+    }
+}
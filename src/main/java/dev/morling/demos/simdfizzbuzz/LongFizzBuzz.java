@@ -0,0 +1,168 @@
+/**
+ *  Copyright 2021 Gunnar Morling
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package dev.morling.demos.simdfizzbuzz;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * FizzBuzz for {@code long} values, e.g. counters beyond {@link Integer#MAX_VALUE}.
+ * Uses the same sentinels as {@link FizzBuzz}, so results are unambiguous for
+ * non-negative values. With 64 bit lanes a vector holds half as many elements as
+ * with {@link FizzBuzz}, while the mask table still has lcm(15, lanes) / lanes
+ * entries.
+ */
+public class LongFizzBuzz {
+
+    private static final long FIZZ = -1;
+    private static final long BUZZ = -2;
+    private static final long FIZZ_BUZZ = -3;
+
+    private final VectorSpecies<Long> species;
+    private final VectorMask[] resultMasks;
+    private final LongVector[] resultValues;
+
+    public LongFizzBuzz() {
+        this(LongVector.SPECIES_PREFERRED);
+    }
+
+    public LongFizzBuzz(VectorSpecies<Long> species) {
+        int lanes = species.length();
+        int tableLength = FizzBuzz.lcm(15, lanes) / lanes;
+
+        this.species = species;
+        this.resultMasks = new VectorMask[tableLength];
+        this.resultValues = new LongVector[tableLength];
+
+        boolean[] fizz = new boolean[lanes];
+        boolean[] buzz = new boolean[lanes];
+
+        for (int i = 0; i < tableLength; i++) {
+            for (int lane = 0; lane < lanes; lane++) {
+                int value = i * lanes + lane + 1;
+                fizz[lane] = value % 3 == 0;
+                buzz[lane] = value % 5 == 0;
+            }
+
+            VectorMask<Long> tm = VectorMask.fromArray(species, fizz, 0);
+            VectorMask<Long> fm = VectorMask.fromArray(species, buzz, 0);
+
+            resultMasks[i] = tm.or(fm);
+            resultValues[i] = LongVector.zero(species).blend(FIZZ, tm).blend(BUZZ, fm).blend(FIZZ_BUZZ, tm.and(fm));
+        }
+    }
+
+    private static long fizzBuzz(long value) {
+        if (value % 3 == 0) {
+            return value % 5 == 0 ? FIZZ_BUZZ : FIZZ;
+        }
+        else if (value % 5 == 0) {
+            return BUZZ;
+        }
+        else {
+            return value;
+        }
+    }
+
+    public long[] serialFizzBuzz(long[] values) {
+        long[] result = new long[values.length];
+        serialFizzBuzz(values, 0, result, 0, values.length);
+        return result;
+    }
+
+    public void serialFizzBuzz(long[] src, int srcOff, long[] dst, int dstOff, int len) {
+        for (int i = 0; i < len; i++) {
+            dst[dstOff + i] = fizzBuzz(src[srcOff + i]);
+        }
+    }
+
+    public long[] simdFizzBuzz(long[] values) {
+        long[] result = new long[values.length];
+        simdFizzBuzz(values, 0, result, 0, values.length);
+        return result;
+    }
+
+    /**
+     * Like {@link FizzBuzz#simdFizzBuzzAnySpecies(int[], int, int[], int, int)}, the
+     * element at {@code srcOff} is expected to be at position 0 of the FizzBuzz period.
+     */
+    public void simdFizzBuzz(long[] src, int srcOff, long[] dst, int dstOff, int len) {
+        int i = 0;
+        int j = 0;
+
+        int upperBound = species.loopBound(len);
+        for (; i < upperBound; i += species.length()) {
+            var va = LongVector.fromArray(species, src, srcOff + i);
+            var fizzbuzz = va.blend(resultValues[j], resultMasks[j]);
+            fizzbuzz.intoArray(dst, dstOff + i);
+            j++;
+            if (j == resultMasks.length) {
+                j = 0;
+            }
+        }
+
+        serialFizzBuzz(src, srcOff + i, dst, dstOff + i, len - i);
+    }
+
+    public void fizzBuzzRange(long start, int count, long[] dst) {
+        fizzBuzzRange(start, count, dst, 0);
+    }
+
+    /**
+     * Writes the FizzBuzz results for the values {@code [start, start + count)} into
+     * {@code dst}, generating the values within vector registers.
+     */
+    public void fizzBuzzRange(long start, int count, long[] dst, int dstOff) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count must not be negative: " + count);
+        }
+        if (count > 0 && start > Long.MAX_VALUE - (count - 1)) {
+            throw new IllegalArgumentException("Range starting at " + start + " with " + count + " elements exceeds the long value space");
+        }
+
+        int lanes = species.length();
+        int period = resultMasks.length * lanes;
+
+        // position of start within the mask table, whose first element is for value 1
+        int position = Math.floorMod(Math.floorMod(start, period) - 1, period);
+
+        int i = 0;
+        long value = start;
+        int prologue = Math.min(count, (lanes - position % lanes) % lanes);
+        for (; i < prologue; i++) {
+            dst[dstOff + i] = fizzBuzz(value++);
+        }
+
+        int j = ((position + prologue) / lanes) % resultMasks.length;
+        var values = LongVector.zero(species).addIndex(1).add(value);
+        int upperBound = i + species.loopBound(count - i);
+
+        for (; i < upperBound; i += lanes) {
+            values.blend(resultValues[j], resultMasks[j]).intoArray(dst, dstOff + i);
+            values = values.add(lanes);
+            j++;
+            if (j == resultMasks.length) {
+                j = 0;
+            }
+        }
+
+        value = start + i;
+        for (; i < count; i++) {
+            dst[dstOff + i] = fizzBuzz(value++);
+        }
+    }
+}
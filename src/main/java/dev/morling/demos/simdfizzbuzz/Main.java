@@ -15,19 +15,139 @@
  */
 package dev.morling.demos.simdfizzbuzz;
 
-import java.util.stream.IntStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Runs a FizzBuzz kernel in a loop using the {@link LoadDriver}, configured by the
+ * given options (see there), or, with the {@code coordinator} and {@code worker}
+ * commands, computes a range of numbers with a {@link ShardCoordinator} and
+ * {@link ShardWorker}s in separate processes:
+ *
+ * <pre>
+ * java --add-modules=jdk.incubator.vector -cp target/classes dev.morling.demos.simdfizzbuzz.Main \
+ *     coordinator [--start &lt;n&gt;] --end &lt;n&gt; [--shard-size &lt;n&gt;] [--workers &lt;n&gt;] [--bind &lt;address&gt;]
+ *     [--port &lt;n&gt;] [--output &lt;dir&gt;] [--max-attempts &lt;n&gt;] [--shard-timeout &lt;seconds&gt;]
+ *
+ * java --add-modules=jdk.incubator.vector -cp target/classes dev.morling.demos.simdfizzbuzz.Main \
+ *     worker --host &lt;host&gt; --port &lt;n&gt;
+ * </pre>
+ *
+ * The coordinator starts {@code --workers} local worker processes (default: one per
+ * core); further workers on other hosts can connect to the given address and port
+ * while the range is being computed.
+ */
 public class Main {
 
-    public static int[] blackhole;
+    public static void main(String[] args) throws Exception {
+        String command = args.length > 0 ? args[0] : "";
+        String[] options = args.length > 0 ? Arrays.copyOfRange(args, 1, args.length) : args;
+
+        switch (command) {
+            case "coordinator" -> coordinator(options);
+            case "worker" -> worker(options);
+            default -> LoadDriver.main(args);
+        }
+    }
+
+    private static void coordinator(String[] args) throws Exception {
+        long start = 1;
+        long end = -1;
+        long shardSize = ShardCoordinator.DEFAULT_SHARD_SIZE;
+        int workers = Runtime.getRuntime().availableProcessors();
+        InetAddress bind = InetAddress.getLoopbackAddress();
+        int port = 0;
+        Path output = null;
+        int maxAttempts = ShardCoordinator.DEFAULT_MAX_ATTEMPTS;
+        Duration shardTimeout = ShardCoordinator.DEFAULT_SHARD_TIMEOUT;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--start" -> start = Long.parseLong(args[++i]);
+                case "--end" -> end = Long.parseLong(args[++i]);
+                case "--shard-size" -> shardSize = Long.parseLong(args[++i]);
+                case "--workers" -> workers = Integer.parseInt(args[++i]);
+                case "--bind" -> bind = InetAddress.getByName(args[++i]);
+                case "--port" -> port = Integer.parseInt(args[++i]);
+                case "--output" -> output = Path.of(args[++i]);
+                case "--max-attempts" -> maxAttempts = Integer.parseInt(args[++i]);
+                case "--shard-timeout" -> shardTimeout = Duration.ofSeconds(Long.parseLong(args[++i]));
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        if (end == -1) {
+            throw new IllegalArgumentException("--end is required");
+        }
+        if (output != null) {
+            Files.createDirectories(output);
+        }
+
+        ShardCoordinator coordinator = new ShardCoordinator(shardSize, maxAttempts, shardTimeout);
+        List<Process> processes = new ArrayList<>();
 
-    public static void main(String[] args) {
-        FizzBuzz fizzBuzz = new FizzBuzz();
+        try (ServerSocket server = new ServerSocket(port, 50, bind)) {
+            for (int i = 0; i < workers; i++) {
+                processes.add(startWorker(server));
+            }
 
-        var values = IntStream.range(1, 257).toArray();
+            ShardCoordinator.Result result = coordinator.run(server, start, end, output);
 
-        for(int i = 0; i < 5_000_000; i++) {
-            blackhole = fizzBuzz.simdFizzBuzz(values);
+            System.out.printf("%,d shards of %,d numbers in %.3f s, %d retried%n", result.shards().size(),
+                    coordinator.shardSize(), result.nanos() / 1e9, result.retries());
+            System.out.println(result.summary());
+            System.out.printf("checksum: %d%n", result.checksum());
+            for (ShardCoordinator.WorkerStats worker : result.workers()) {
+                System.out.printf("%s: %,d shards, %,d numbers, %,.0f numbers/s%n", worker.worker(), worker.shards(),
+                        worker.elements(), worker.elementsPerSecond());
+            }
         }
+        finally {
+            for (Process process : processes) {
+                if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                    process.destroy();
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts a worker process with the same JVM and class path as this one.
+     */
+    private static Process startWorker(ServerSocket server) throws Exception {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        InetAddress address = server.getInetAddress().isAnyLocalAddress() ? InetAddress.getLoopbackAddress() : server.getInetAddress();
+
+        return new ProcessBuilder(java, "--add-modules=jdk.incubator.vector", "-cp", System.getProperty("java.class.path"),
+                Main.class.getName(), "worker", "--host", address.getHostAddress(), "--port",
+                String.valueOf(server.getLocalPort()))
+                .inheritIO()
+                .start();
+    }
+
+    private static void worker(String[] args) throws Exception {
+        String host = "localhost";
+        int port = -1;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--host" -> host = args[++i];
+                case "--port" -> port = Integer.parseInt(args[++i]);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        if (port == -1) {
+            throw new IllegalArgumentException("--port is required");
+        }
+
+        new ShardWorker().run(host, port);
     }
 }
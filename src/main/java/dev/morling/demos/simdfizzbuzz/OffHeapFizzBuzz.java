@@ -0,0 +1,101 @@
+/**
+ *  Copyright 2021 Gunnar Morling
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package dev.morling.demos.simdfizzbuzz;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import jdk.incubator.foreign.MemorySegment;
+
+/**
+ * Runs the FizzBuzz SIMD kernels over native memory, e.g. memory-mapped files or
+ * memory shared with native code, without copying it onto the heap first.
+ * <p>
+ * Segments may hold more than 2^31 ints. As the Vector API of Java 17 can only load
+ * from and store into arrays and byte buffers, segments are processed in windows of
+ * less than 2 GB, which are viewed as byte buffers. Window sizes are a multiple of
+ * the kernels' mask period, so each window starts at mask index 0.
+ */
+public class OffHeapFizzBuzz {
+
+    // a multiple of 15 * lanes for all species of up to 64 lanes
+    private static final int PERIOD = 15 * 64;
+
+    private static final int MAX_WINDOW_SIZE = Integer.MAX_VALUE / Integer.BYTES / PERIOD * PERIOD;
+
+    private final FizzBuzz fizzBuzz;
+    private final int windowSize;
+
+    public OffHeapFizzBuzz() {
+        this(new FizzBuzz(), MAX_WINDOW_SIZE);
+    }
+
+    /**
+     * @param windowSize the number of ints processed per window; rounded up to the next
+     * multiple of the mask period
+     */
+    OffHeapFizzBuzz(FizzBuzz fizzBuzz, int windowSize) {
+        this.fizzBuzz = fizzBuzz;
+        this.windowSize = Math.min(MAX_WINDOW_SIZE, (windowSize + PERIOD - 1) / PERIOD * PERIOD);
+    }
+
+    /**
+     * Writes the FizzBuzz results for all ints in {@code src} into {@code dst}, using
+     * the {@link FizzBuzz#simdFizzBuzzSeparateMaskIndex(ByteBuffer, int, ByteBuffer, int, int)
+     * separate mask index} kernel. Both segments use the given byte order, and they may
+     * be the same segment.
+     */
+    public void simdFizzBuzzSeparateMaskIndex(MemorySegment src, MemorySegment dst, ByteOrder order) {
+        long len = length(src, dst);
+
+        for (long i = 0; i < len; i += windowSize) {
+            int size = (int) Math.min(windowSize, len - i);
+            fizzBuzz.simdFizzBuzzSeparateMaskIndex(window(src, i, size, order), 0, window(dst, i, size, order), 0, size);
+        }
+    }
+
+    /**
+     * Writes the FizzBuzz results for all ints in {@code src} into {@code dst}, using
+     * the {@link FizzBuzz#simdFizzBuzzMasked(ByteBuffer, int, ByteBuffer, int, int)
+     * masked} kernel. Both segments use the given byte order, and they may be the same
+     * segment.
+     */
+    public void simdFizzBuzzMasked(MemorySegment src, MemorySegment dst, ByteOrder order) {
+        long len = length(src, dst);
+
+        for (long i = 0; i < len; i += windowSize) {
+            int size = (int) Math.min(windowSize, len - i);
+            fizzBuzz.simdFizzBuzzMasked(window(src, i, size, order), 0, window(dst, i, size, order), 0, size);
+        }
+    }
+
+    private static long length(MemorySegment src, MemorySegment dst) {
+        if (src.byteSize() % Integer.BYTES != 0) {
+            throw new IllegalArgumentException("Source segment size must be a multiple of " + Integer.BYTES + ": " + src.byteSize());
+        }
+        if (dst.byteSize() < src.byteSize()) {
+            throw new IllegalArgumentException("Destination segment is smaller than source segment: " + dst.byteSize() + " < " + src.byteSize());
+        }
+
+        return src.byteSize() / Integer.BYTES;
+    }
+
+    private static ByteBuffer window(MemorySegment segment, long index, int size, ByteOrder order) {
+        return segment.asSlice(index * Integer.BYTES, (long) size * Integer.BYTES)
+                .asByteBuffer()
+                .order(order);
+    }
+}
@@ -0,0 +1,234 @@
+/**
+ *  Copyright 2021 Gunnar Morling
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package dev.morling.demos.simdfizzbuzz;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Compact FizzBuzz output, representing only the class of each element with two
+ * bits: 0 for plain numbers, 1 for Fizz, 2 for Buzz and 3 for FizzBuzz, i.e. the
+ * lower bit is set for multiples of 3 and the upper bit for multiples of 5. The
+ * negated class is the sentinel used by the {@code int[]} results of
+ * {@link FizzBuzz}. 32 classes are packed into one {@code long}, the class of
+ * element {@code i} being stored at bit {@code 2 * (i % 32)} of word {@code i / 32}.
+ */
+public class PackedFizzBuzz {
+
+    public static final int NUMBER = 0;
+    public static final int FIZZ = 1;
+    public static final int BUZZ = 2;
+    public static final int FIZZ_BUZZ = 3;
+
+    private static final int CLASSES_PER_WORD = 32;
+
+    // the packed words for 32 elements starting at each of the 15 positions of the
+    // FizzBuzz period, position 0 being the one of value 1
+    private static final long[] RANGE_WORDS = new long[15];
+
+    static {
+        for (int position = 0; position < 15; position++) {
+            long word = 0;
+            for (int i = 0; i < CLASSES_PER_WORD; i++) {
+                word |= (long) classOf(position + i + 1) << (2 * i);
+            }
+            RANGE_WORDS[position] = word;
+        }
+    }
+
+    private final VectorSpecies<Integer> species;
+
+    // the shift distance for each lane's class within a chunk of packed bits
+    private final IntVector laneShifts;
+
+    public PackedFizzBuzz() {
+        this(IntVector.SPECIES_PREFERRED);
+    }
+
+    public PackedFizzBuzz(VectorSpecies<Integer> species) {
+        if (species.length() > 16) {
+            throw new IllegalArgumentException("Species with more than 16 lanes aren't supported: " + species);
+        }
+
+        this.species = species;
+        this.laneShifts = IntVector.zero(species).addIndex(2);
+    }
+
+    /**
+     * Returns the number of words needed for the classes of the given number of elements.
+     */
+    public static int packedLength(int len) {
+        return (len + CLASSES_PER_WORD - 1) / CLASSES_PER_WORD;
+    }
+
+    /**
+     * Returns the class of the element at the given index.
+     */
+    public static int classAt(long[] packed, int index) {
+        return (int) (packed[index / CLASSES_PER_WORD] >>> (2 * (index % CLASSES_PER_WORD))) & 0b11;
+    }
+
+    public long[] classify(int[] values) {
+        long[] packed = new long[packedLength(values.length)];
+        classify(values, 0, values.length, packed);
+        return packed;
+    }
+
+    /**
+     * Writes the classes of {@code len} arbitrary values of {@code src}, starting at
+     * {@code srcOff}, into {@code dst}. Divisibility is tested on the values themselves,
+     * as done by {@link FizzBuzz#simdFizzBuzzByValue(int[])}.
+     */
+    public void classify(int[] src, int srcOff, int len, long[] dst) {
+        int i = 0;
+        long word = 0;
+
+        int upperBound = species.loopBound(len);
+        for (; i < upperBound; i += species.length()) {
+            var abs = IntVector.fromArray(species, src, srcOff + i).abs();
+            var fizz = abs.mul(FizzBuzz.INVERSE_3).compare(VectorOperators.UNSIGNED_LE, FizzBuzz.MAX_QUOTIENT_3);
+            var buzz = abs.mul(FizzBuzz.INVERSE_5).compare(VectorOperators.UNSIGNED_LE, FizzBuzz.MAX_QUOTIENT_5);
+
+            // the lane count divides 32, so chunks never span two words
+            int shift = 2 * (i % CLASSES_PER_WORD);
+            word |= (spread(fizz.toLong()) | spread(buzz.toLong()) << 1) << shift;
+
+            if (shift + 2 * species.length() == Long.SIZE) {
+                dst[i / CLASSES_PER_WORD] = word;
+                word = 0;
+            }
+        }
+
+        for (; i < len; i++) {
+            word |= (long) classOf(src[srcOff + i]) << (2 * (i % CLASSES_PER_WORD));
+            if (i % CLASSES_PER_WORD == CLASSES_PER_WORD - 1) {
+                dst[i / CLASSES_PER_WORD] = word;
+                word = 0;
+            }
+        }
+
+        if (len % CLASSES_PER_WORD != 0) {
+            dst[len / CLASSES_PER_WORD] = word;
+        }
+    }
+
+    public void classifyRange(long start, int count, long[] dst) {
+        classifyRange(start, count, dst, 0);
+    }
+
+    /**
+     * Writes the classes of the values {@code [start, start + count)} into
+     * {@code dst}, starting at the word {@code dstOff}. As the classes of consecutive
+     * values repeat every 15 elements, this copies precomputed words rather than
+     * testing any values.
+     */
+    public void classifyRange(long start, int count, long[] dst, int dstOff) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count must not be negative: " + count);
+        }
+
+        int position = (int) Math.floorMod(start - 1, 15L);
+        int words = count / CLASSES_PER_WORD;
+
+        for (int w = 0; w < words; w++) {
+            dst[dstOff + w] = RANGE_WORDS[position];
+            // 32 elements per word, i.e. the position advances by 32 % 15 == 2
+            position += 2;
+            if (position >= 15) {
+                position -= 15;
+            }
+        }
+
+        int remainder = count % CLASSES_PER_WORD;
+        if (remainder != 0) {
+            dst[dstOff + words] = RANGE_WORDS[position] & ((1L << (2 * remainder)) - 1);
+        }
+    }
+
+    /**
+     * Expands packed classes into the {@code int[]} sentinel format of {@link FizzBuzz},
+     * taking the values of plain numbers from {@code values}.
+     */
+    public void decode(long[] packed, int[] values, int valuesOff, int[] dst, int dstOff, int len) {
+        int i = 0;
+
+        int upperBound = species.loopBound(len);
+        for (; i < upperBound; i += species.length()) {
+            var classes = classesAt(packed, i);
+            IntVector.fromArray(species, values, valuesOff + i)
+                    .blend(classes.neg(), classes.compare(VectorOperators.NE, NUMBER))
+                    .intoArray(dst, dstOff + i);
+        }
+
+        for (; i < len; i++) {
+            int c = classAt(packed, i);
+            dst[dstOff + i] = c == NUMBER ? values[valuesOff + i] : -c;
+        }
+    }
+
+    public void decodeRange(long[] packed, long start, int count, int[] dst) {
+        decodeRange(packed, start, count, dst, 0);
+    }
+
+    /**
+     * Expands packed classes of the values {@code [start, start + count)} into the
+     * {@code int[]} sentinel format of {@link FizzBuzz}, starting at {@code dstOff};
+     * the values of plain numbers are generated rather than loaded.
+     */
+    public void decodeRange(long[] packed, long start, int count, int[] dst, int dstOff) {
+        FizzBuzz.checkIntRange(start, count);
+
+        int i = 0;
+        var values = IntVector.zero(species).addIndex(1).add((int) start);
+
+        int upperBound = species.loopBound(count);
+        for (; i < upperBound; i += species.length()) {
+            var classes = classesAt(packed, i);
+            values.blend(classes.neg(), classes.compare(VectorOperators.NE, NUMBER))
+                    .intoArray(dst, dstOff + i);
+            values = values.add(species.length());
+        }
+
+        for (; i < count; i++) {
+            int c = classAt(packed, i);
+            dst[dstOff + i] = c == NUMBER ? (int) (start + i) : -c;
+        }
+    }
+
+    private IntVector classesAt(long[] packed, int index) {
+        int bits = (int) (packed[index / CLASSES_PER_WORD] >>> (2 * (index % CLASSES_PER_WORD)));
+        return IntVector.broadcast(species, bits)
+                .lanewise(VectorOperators.LSHR, laneShifts)
+                .and(0b11);
+    }
+
+    private static int classOf(long value) {
+        return (value % 3 == 0 ? FIZZ : NUMBER) | (value % 5 == 0 ? BUZZ : NUMBER);
+    }
+
+    /**
+     * Spreads the lower 16 bits of the given value to the even bits of the result.
+     */
+    private static long spread(long bits) {
+        long x = bits & 0xFFFFL;
+        x = (x | x << 8) & 0x00FF00FFL;
+        x = (x | x << 4) & 0x0F0F0F0FL;
+        x = (x | x << 2) & 0x33333333L;
+        x = (x | x << 1) & 0x55555555L;
+        return x;
+    }
+}
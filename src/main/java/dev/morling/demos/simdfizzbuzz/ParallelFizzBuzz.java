@@ -0,0 +1,112 @@
+/**
+ *  Copyright 2021 Gunnar Morling
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package dev.morling.demos.simdfizzbuzz;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs FizzBuzz for large arrays and ranges on a {@link ForkJoinPool}. The work is
+ * split into chunks whose boundaries are aligned to the mask period of the SIMD
+ * kernel, so that each chunk starts at mask index 0.
+ */
+public class ParallelFizzBuzz {
+
+    public static final int DEFAULT_MIN_CHUNK_SIZE = 64 * 1024;
+
+    private final FizzBuzz fizzBuzz;
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+    public ParallelFizzBuzz() {
+        this(new FizzBuzz(), ForkJoinPool.commonPool(), DEFAULT_MIN_CHUNK_SIZE);
+    }
+
+    /**
+     * @param minChunkSize the number of elements below which a chunk isn't split any
+     * further; rounded up to the next multiple of the kernel's mask period
+     */
+    public ParallelFizzBuzz(FizzBuzz fizzBuzz, ForkJoinPool pool, int minChunkSize) {
+        if (minChunkSize <= 0) {
+            throw new IllegalArgumentException("minChunkSize must be positive: " + minChunkSize);
+        }
+
+        int period = fizzBuzz.period();
+
+        this.fizzBuzz = fizzBuzz;
+        this.pool = pool;
+        this.chunkSize = (int) Math.min((minChunkSize + period - 1L) / period * period, Integer.MAX_VALUE / period * period);
+    }
+
+    public int chunkSize() {
+        return chunkSize;
+    }
+
+    public int[] fizzBuzz(int[] values) {
+        int[] result = new int[values.length];
+        fizzBuzz(values, 0, result, 0, values.length);
+        return result;
+    }
+
+    public void fizzBuzz(int[] src, int srcOff, int[] dst, int dstOff, int len) {
+        pool.invoke(new ChunkAction((from, to) -> fizzBuzz.simdFizzBuzzAnySpecies(src, srcOff + from, dst, dstOff + from, to - from), 0, len));
+    }
+
+    public void fizzBuzzRange(long start, int count, int[] dst) {
+        fizzBuzzRange(start, count, dst, 0);
+    }
+
+    public void fizzBuzzRange(long start, int count, int[] dst, int dstOff) {
+        // validate upfront rather than failing within one of the tasks
+        FizzBuzz.checkIntRange(start, count);
+
+        pool.invoke(new ChunkAction((from, to) -> fizzBuzz.fizzBuzzRange(start + from, to - from, dst, dstOff + from), 0, count));
+    }
+
+    @FunctionalInterface
+    private interface ChunkKernel {
+        void compute(int from, int to);
+    }
+
+    private class ChunkAction extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ChunkKernel kernel;
+        private final int from;
+        private final int to;
+
+        ChunkAction(ChunkKernel kernel, int from, int to) {
+            this.kernel = kernel;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunkSize) {
+                kernel.compute(from, to);
+                return;
+            }
+
+            // split at a chunk boundary, keeping all chunks but the last one aligned
+            int chunks = (int) ((to - from + (long) chunkSize - 1) / chunkSize);
+            int mid = from + chunks / 2 * chunkSize;
+
+            invokeAll(new ChunkAction(kernel, from, mid), new ChunkAction(kernel, mid, to));
+        }
+    }
+}
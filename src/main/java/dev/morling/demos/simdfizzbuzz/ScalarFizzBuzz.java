@@ -0,0 +1,151 @@
+/**
+ *  Copyright 2021 Gunnar Morling
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package dev.morling.demos.simdfizzbuzz;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Position-based FizzBuzz kernels in plain Java, for hosts where the Vector API is
+ * slow (e.g. the README numbers of the ARM machines, where no vector kernel beats
+ * {@link FizzBuzz#serialFizzBuzzMasked(int[])}) or not available at all. This class
+ * doesn't depend on {@code jdk.incubator.vector}, so it can be loaded by JVMs started
+ * without {@code --add-modules jdk.incubator.vector}; {@link FizzBuzzEngine} uses it
+ * in that case.
+ * <p>
+ * The {@code int[]} kernel is unrolled over the 15-element period: as the result of
+ * each position is known, the loop body is a sequence of copies and constant stores,
+ * without any branches or table lookups. The {@link ByteBuffer} kernel processes two
+ * ints per step as one {@code long}, selecting between the values and the codes with
+ * constant masks. Elements after the last full period are handled with branchless
+ * selects, like {@link FizzBuzz#serialFizzBuzzMasked(int[])}, too.
+ * <p>
+ * Just like the mask-based kernels of {@link FizzBuzz}, the element at the source
+ * offset is expected to be at position 0 of the FizzBuzz period. Instances are
+ * stateless and thread-safe.
+ */
+public class ScalarFizzBuzz {
+
+    private static final int FIZZ = -1;
+    private static final int BUZZ = -2;
+    private static final int FIZZ_BUZZ = -3;
+
+    private static final int PERIOD = 15;
+
+    // per position of the period: -1 for numbers and 0 for codes, and the code or 0,
+    // so that (value & KEEP[i]) | CODES[i] is the result of position i
+    private static final int[] KEEP = new int[PERIOD];
+    private static final int[] CODES = new int[PERIOD];
+
+    // the same for the pairs of positions (2i, 2i + 1) of two periods, combined into
+    // one long as read from a buffer with the given byte order
+    private static final long[] KEEP_PAIRS_LITTLE_ENDIAN = new long[PERIOD];
+    private static final long[] CODE_PAIRS_LITTLE_ENDIAN = new long[PERIOD];
+    private static final long[] KEEP_PAIRS_BIG_ENDIAN = new long[PERIOD];
+    private static final long[] CODE_PAIRS_BIG_ENDIAN = new long[PERIOD];
+
+    static {
+        for (int i = 0; i < PERIOD; i++) {
+            int value = i + 1;
+            CODES[i] = value % 15 == 0 ? FIZZ_BUZZ : value % 3 == 0 ? FIZZ : value % 5 == 0 ? BUZZ : 0;
+            KEEP[i] = CODES[i] == 0 ? -1 : 0;
+        }
+
+        for (int i = 0; i < PERIOD; i++) {
+            int first = (2 * i) % PERIOD;
+            int second = (2 * i + 1) % PERIOD;
+
+            KEEP_PAIRS_LITTLE_ENDIAN[i] = pair(KEEP[first], KEEP[second]);
+            CODE_PAIRS_LITTLE_ENDIAN[i] = pair(CODES[first], CODES[second]);
+            KEEP_PAIRS_BIG_ENDIAN[i] = pair(KEEP[second], KEEP[first]);
+            CODE_PAIRS_BIG_ENDIAN[i] = pair(CODES[second], CODES[first]);
+        }
+    }
+
+    private static long pair(int low, int high) {
+        return (low & 0xFFFF_FFFFL) | ((long) high << 32);
+    }
+
+    public int[] fizzBuzz(int[] values) {
+        int[] result = new int[values.length];
+        fizzBuzz(values, 0, result, 0, values.length);
+        return result;
+    }
+
+    public void fizzBuzz(int[] src, int srcOff, int[] dst, int dstOff, int len) {
+        int i = 0;
+
+        int upperBound = len - len % PERIOD;
+        for (; i < upperBound; i += PERIOD) {
+            int s = srcOff + i;
+            int d = dstOff + i;
+
+            dst[d] = src[s];
+            dst[d + 1] = src[s + 1];
+            dst[d + 2] = FIZZ;
+            dst[d + 3] = src[s + 3];
+            dst[d + 4] = BUZZ;
+            dst[d + 5] = FIZZ;
+            dst[d + 6] = src[s + 6];
+            dst[d + 7] = src[s + 7];
+            dst[d + 8] = FIZZ;
+            dst[d + 9] = BUZZ;
+            dst[d + 10] = src[s + 10];
+            dst[d + 11] = FIZZ;
+            dst[d + 12] = src[s + 12];
+            dst[d + 13] = src[s + 13];
+            dst[d + 14] = FIZZ_BUZZ;
+        }
+
+        for (int j = 0; i < len; i++, j++) {
+            dst[dstOff + i] = (src[srcOff + i] & KEEP[j]) | CODES[j];
+        }
+    }
+
+    /**
+     * Variant of {@link #fizzBuzz(int[], int, int[], int, int)} for (typically direct)
+     * byte buffers. Offsets and length are given in ints; the buffers' byte orders are
+     * applied and they don't need to be aligned. If both buffers have the same byte
+     * order, two ints are processed per {@code long} read and write.
+     */
+    public void fizzBuzz(ByteBuffer src, int srcOff, ByteBuffer dst, int dstOff, int len) {
+        int i = 0;
+
+        if (src.order() == dst.order()) {
+            boolean littleEndian = src.order() == ByteOrder.LITTLE_ENDIAN;
+            long[] keep = littleEndian ? KEEP_PAIRS_LITTLE_ENDIAN : KEEP_PAIRS_BIG_ENDIAN;
+            long[] codes = littleEndian ? CODE_PAIRS_LITTLE_ENDIAN : CODE_PAIRS_BIG_ENDIAN;
+
+            int upperBound = len - len % (2 * PERIOD);
+            for (; i < upperBound; i += 2 * PERIOD) {
+                int s = (srcOff + i) * Integer.BYTES;
+                int d = (dstOff + i) * Integer.BYTES;
+
+                for (int j = 0; j < PERIOD; j++) {
+                    dst.putLong(d + j * Long.BYTES, (src.getLong(s + j * Long.BYTES) & keep[j]) | codes[j]);
+                }
+            }
+        }
+
+        for (int j = i % PERIOD; i < len; i++) {
+            dst.putInt((dstOff + i) * Integer.BYTES, (src.getInt((srcOff + i) * Integer.BYTES) & KEEP[j]) | CODES[j]);
+            j++;
+            if (j == PERIOD) {
+                j = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,406 @@
+/**
+ *  Copyright 2021 Gunnar Morling
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package dev.morling.demos.simdfizzbuzz;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Splits a range of numbers into shards and has them computed by {@link ShardWorker}s
+ * in other processes, possibly on other hosts, which connect via TCP. Each worker
+ * is handed one shard at a time; once all shards are done, the workers are told to
+ * stop.
+ * <p>
+ * Shard boundaries are multiples of the shard size (plus one), which is a multiple
+ * of {@link #ALIGNMENT}, so that each shard but the first one starts at index 0 of
+ * the mask tables of any species. Per shard, workers return the {@link FizzBuzz.Summary}
+ * and a checksum of the results, and optionally write the shard's text into a
+ * segment file in the given directory (see {@link ShardWorker#segmentFileName(int)}),
+ * which must be shared by all workers; concatenating the segments by id yields the
+ * text of the complete range.
+ * <p>
+ * If a worker fails, disconnects, doesn't respond within the shard timeout or returns
+ * an inconsistent result, it is dropped and its shard is handed to another worker,
+ * up to the configured number of attempts per shard. The run fails, too, if no worker
+ * is connected for longer than the shard timeout. Once the run is over, all worker
+ * connections are closed.
+ */
+public class ShardCoordinator {
+
+    /**
+     * lcm(15, lanes) for all species of up to 64 lanes.
+     */
+    public static final int ALIGNMENT = 15 * 64;
+
+    public static final long DEFAULT_SHARD_SIZE = ALIGNMENT * 1_000_000L;
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    public static final Duration DEFAULT_SHARD_TIMEOUT = Duration.ofMinutes(10);
+
+    // the protocol: a worker sends the protocol version and its name once, then the
+    // coordinator sends SHARD messages, each answered by the worker with the shard's
+    // result (see ShardWorker), and finally STOP
+    static final int PROTOCOL_VERSION = 1;
+    static final byte STOP = 0;
+    static final byte SHARD = 1;
+
+    // how often waiting threads check whether all shards are done
+    private static final long POLL_MILLIS = 100;
+
+    // how long connections get to tell their workers to stop after a successful run
+    private static final long STOP_MILLIS = 1000;
+
+    private final long shardSize;
+    private final int maxAttempts;
+    private final Duration shardTimeout;
+
+    /**
+     * A part of the range: the numbers {@code [from, to)}.
+     */
+    public record Shard(int id, long from, long to) {
+    }
+
+    /**
+     * The result of one shard. {@code checksum} is the sum of {@code result(n) * n}
+     * over all numbers {@code n} of the shard; like {@link FizzBuzz.Summary#numberSum()},
+     * it wraps around on overflow.
+     */
+    public record ShardResult(int shard, FizzBuzz.Summary summary, long checksum, String worker, long nanos) {
+    }
+
+    /**
+     * The work done by one worker connection; {@code nanos} is the time spent
+     * computing shards as reported by the worker.
+     */
+    public record WorkerStats(String worker, int shards, long elements, long nanos) {
+
+        public double elementsPerSecond() {
+            return nanos == 0 ? 0 : elements * 1e9 / nanos;
+        }
+    }
+
+    /**
+     * The combined result of all shards, whose sums wrap around on overflow, and the
+     * stats of all workers which connected.
+     */
+    public record Result(FizzBuzz.Summary summary, long checksum, List<ShardResult> shards, List<WorkerStats> workers,
+                         int retries, long nanos) {
+    }
+
+    public ShardCoordinator() {
+        this(DEFAULT_SHARD_SIZE, DEFAULT_MAX_ATTEMPTS, DEFAULT_SHARD_TIMEOUT);
+    }
+
+    /**
+     * @param shardSize the number of elements per shard; rounded up to the next multiple of {@link #ALIGNMENT}
+     * @param maxAttempts the number of workers a shard is handed to before giving up
+     * @param shardTimeout the time a worker may take for one shard, and the time to wait for workers to connect
+     */
+    public ShardCoordinator(long shardSize, int maxAttempts, Duration shardTimeout) {
+        if (shardSize <= 0) {
+            throw new IllegalArgumentException("shardSize must be positive: " + shardSize);
+        }
+        if (maxAttempts <= 0) {
+            throw new IllegalArgumentException("maxAttempts must be positive: " + maxAttempts);
+        }
+
+        this.shardSize = (shardSize + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+        this.maxAttempts = maxAttempts;
+        this.shardTimeout = shardTimeout;
+    }
+
+    public long shardSize() {
+        return shardSize;
+    }
+
+    /**
+     * Returns the shards of the numbers from {@code start} (inclusive, positive) to
+     * {@code end} (exclusive).
+     */
+    public List<Shard> shards(long start, long end) {
+        if (start < 1) {
+            throw new IllegalArgumentException("start must be positive: " + start);
+        }
+
+        List<Shard> shards = new ArrayList<>();
+        long from = start;
+        while (from < end) {
+            // the next boundary after from; boundaries are at 1 + k * shardSize
+            long boundary = Math.floorDiv(from - 1, shardSize) * shardSize + 1 + shardSize;
+            long to = boundary < from ? end : Math.min(end, boundary);
+            shards.add(new Shard(shards.size(), from, to));
+            from = to;
+        }
+        return shards;
+    }
+
+    /**
+     * Computes the given range with the workers connecting to the given server socket,
+     * which remains open afterwards.
+     *
+     * @param outputDir the directory the workers write the segment files to, or {@code null}
+     * @throws IOException if a shard failed {@code maxAttempts} times or no worker was connected in time
+     */
+    public Result run(ServerSocket server, long start, long end, Path outputDir) throws IOException, InterruptedException {
+        long begin = System.nanoTime();
+        List<Shard> shards = shards(start, end);
+
+        Run run = new Run(shards, outputDir);
+        Thread acceptor = new Thread(() -> run.accept(server), "shard-coordinator-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        try {
+            while (!run.remaining.await(POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (run.failure.get() != null) {
+                    throw run.failure.get();
+                }
+                if (run.connected.get() == 0 && System.nanoTime() - run.idleSince > shardTimeout.toNanos()) {
+                    throw new IOException("No worker connected for " + shardTimeout + ", " + run.remaining.getCount() + " shards left");
+                }
+            }
+        }
+        finally {
+            run.done = true;
+            acceptor.join();
+            run.close(run.remaining.getCount() == 0 && run.failure.get() == null);
+        }
+
+        if (run.failure.get() != null) {
+            throw run.failure.get();
+        }
+
+        return run.result(System.nanoTime() - begin);
+    }
+
+    private record Attempt(Shard shard, int attempt) {
+    }
+
+    /**
+     * The state of one invocation of {@link ShardCoordinator#run(ServerSocket, long, long, Path)}.
+     */
+    private class Run {
+
+        private final String outputDir;
+        private final BlockingQueue<Attempt> pending = new LinkedBlockingQueue<>();
+        private final Map<Integer, ShardResult> results = new ConcurrentHashMap<>();
+        private final List<WorkerStats> stats = new CopyOnWriteArrayList<>();
+        private final List<Thread> connections = new CopyOnWriteArrayList<>();
+        private final List<Socket> sockets = new CopyOnWriteArrayList<>();
+        private final CountDownLatch remaining;
+        private final AtomicInteger retries = new AtomicInteger();
+        private final AtomicInteger connected = new AtomicInteger();
+        private final AtomicReference<IOException> failure = new AtomicReference<>();
+
+        private volatile boolean done;
+
+        // since when no worker is connected
+        private volatile long idleSince = System.nanoTime();
+
+        Run(List<Shard> shards, Path outputDir) {
+            this.outputDir = outputDir != null ? outputDir.toAbsolutePath().toString() : "";
+            this.remaining = new CountDownLatch(shards.size());
+
+            for (Shard shard : shards) {
+                pending.add(new Attempt(shard, 1));
+            }
+        }
+
+        void accept(ServerSocket server) {
+            try {
+                server.setSoTimeout((int) POLL_MILLIS);
+
+                while (!done) {
+                    Socket socket;
+                    try {
+                        socket = server.accept();
+                    }
+                    catch (SocketTimeoutException e) {
+                        continue;
+                    }
+
+                    connected.incrementAndGet();
+                    sockets.add(socket);
+                    Thread connection = new Thread(() -> serve(socket), "shard-coordinator-" + socket.getRemoteSocketAddress());
+                    connection.setDaemon(true);
+                    connections.add(connection);
+                    connection.start();
+                }
+            }
+            catch (IOException e) {
+                failure.compareAndSet(null, e);
+            }
+        }
+
+        /**
+         * Closes all connections, after giving them time to send STOP to their workers
+         * if the run succeeded. Otherwise, connections may still be waiting for the
+         * result of a shard, for up to the shard timeout.
+         */
+        void close(boolean succeeded) throws InterruptedException {
+            if (succeeded) {
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(STOP_MILLIS);
+                for (Thread connection : connections) {
+                    long millis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                    if (millis <= 0) {
+                        break;
+                    }
+                    connection.join(millis);
+                }
+            }
+
+            for (Socket socket : sockets) {
+                try {
+                    socket.close();
+                }
+                catch (IOException e) {
+                    // ignore; the connection is abandoned either way
+                }
+            }
+            for (Thread connection : connections) {
+                connection.join();
+            }
+        }
+
+        private void serve(Socket socket) {
+            String worker = String.valueOf(socket.getRemoteSocketAddress());
+            int shards = 0;
+            long elements = 0;
+            long nanos = 0;
+            Attempt attempt = null;
+
+            try (socket) {
+                socket.setSoTimeout((int) Math.min(shardTimeout.toMillis(), Integer.MAX_VALUE));
+                socket.setTcpNoDelay(true);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+                int version = in.readInt();
+                if (version != PROTOCOL_VERSION) {
+                    throw new IOException("Unsupported protocol version of worker " + worker + ": " + version);
+                }
+                worker = in.readUTF() + " (" + worker + ")";
+
+                while (!done) {
+                    attempt = pending.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (attempt == null) {
+                        continue;
+                    }
+
+                    Shard shard = attempt.shard();
+                    out.writeByte(SHARD);
+                    out.writeInt(shard.id());
+                    out.writeLong(shard.from());
+                    out.writeLong(shard.to());
+                    out.writeUTF(outputDir);
+                    out.flush();
+
+                    int id = in.readInt();
+                    var summary = new FizzBuzz.Summary(in.readLong(), in.readLong(), in.readLong(), in.readLong(), in.readLong());
+                    long checksum = in.readLong();
+                    long shardNanos = in.readLong();
+
+                    long count = shard.to() - shard.from();
+                    if (id != shard.id() || summary.fizz() + summary.buzz() + summary.fizzBuzz() + summary.numbers() != count) {
+                        throw new IOException("Inconsistent result for shard " + shard + " from worker " + worker + ": " + summary);
+                    }
+
+                    results.put(id, new ShardResult(id, summary, checksum, worker, shardNanos));
+                    attempt = null;
+                    remaining.countDown();
+
+                    shards++;
+                    elements += count;
+                    nanos += shardNanos;
+                }
+
+                out.writeByte(STOP);
+                out.flush();
+            }
+            catch (IOException e) {
+                if (attempt != null) {
+                    retry(attempt, worker, e);
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (attempt != null) {
+                    pending.add(attempt);
+                }
+            }
+            finally {
+                stats.add(new WorkerStats(worker, shards, elements, nanos));
+                if (connected.decrementAndGet() == 0) {
+                    idleSince = System.nanoTime();
+                }
+            }
+        }
+
+        private void retry(Attempt attempt, String worker, IOException cause) {
+            if (attempt.attempt() >= maxAttempts) {
+                failure.compareAndSet(null, new IOException("Shard " + attempt.shard() + " failed " + maxAttempts
+                        + " times, last on worker " + worker, cause));
+                return;
+            }
+
+            retries.incrementAndGet();
+            pending.add(new Attempt(attempt.shard(), attempt.attempt() + 1));
+        }
+
+        Result result(long nanos) {
+            List<ShardResult> shards = new ArrayList<>(results.values());
+            shards.sort(Comparator.comparingInt(ShardResult::shard));
+
+            long fizz = 0;
+            long buzz = 0;
+            long fizzBuzz = 0;
+            long numbers = 0;
+            long numberSum = 0;
+            long checksum = 0;
+
+            for (ShardResult shard : shards) {
+                fizz += shard.summary().fizz();
+                buzz += shard.summary().buzz();
+                fizzBuzz += shard.summary().fizzBuzz();
+                numbers += shard.summary().numbers();
+                numberSum += shard.summary().numberSum();
+                checksum += shard.checksum();
+            }
+
+            return new Result(new FizzBuzz.Summary(fizz, buzz, fizzBuzz, numbers, numberSum), checksum, shards,
+                    List.copyOf(stats), retries.get(), nanos);
+        }
+    }
+}
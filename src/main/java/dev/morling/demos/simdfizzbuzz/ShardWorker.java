@@ -0,0 +1,202 @@
+/**
+ *  Copyright 2021 Gunnar Morling
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package dev.morling.demos.simdfizzbuzz;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Computes shards handed out by a {@link ShardCoordinator}. For each shard, the
+ * results are generated block by block with {@link LongFizzBuzz#fizzBuzzRange(long, int, long[])}
+ * and aggregated one vector at a time; if the coordinator passes an output directory,
+ * the shard's text is written into a segment file there using {@link FizzBuzzFileWriter}
+ * and renamed once complete.
+ * Instances reuse their block buffer and aren't thread-safe.
+ */
+public class ShardWorker {
+
+    // the number of results generated and aggregated at a time
+    private static final int BLOCK_SIZE = 16 * 1024;
+
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+    private final LongFizzBuzz fizzBuzz = new LongFizzBuzz(SPECIES);
+    private final long[] block = new long[BLOCK_SIZE];
+    private final String name;
+
+    public ShardWorker() {
+        this(ProcessHandle.current().pid() + "@" + hostName());
+    }
+
+    public ShardWorker(String name) {
+        this.name = name;
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        }
+        catch (IOException e) {
+            return "localhost";
+        }
+    }
+
+    /**
+     * Returns the name of the segment file of the given shard; ids are padded to ten
+     * digits, the length of the largest int, so that the names sort like the ids.
+     */
+    public static String segmentFileName(int shard) {
+        return String.format("shard-%010d.txt", shard);
+    }
+
+    /**
+     * Connects to the coordinator at the given address and computes shards until
+     * told to stop.
+     */
+    public void run(String host, int port) throws IOException {
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            out.writeInt(ShardCoordinator.PROTOCOL_VERSION);
+            out.writeUTF(name);
+            out.flush();
+
+            while (in.readByte() == ShardCoordinator.SHARD) {
+                int id = in.readInt();
+                long from = in.readLong();
+                long to = in.readLong();
+                String outputDir = in.readUTF();
+
+                long begin = System.nanoTime();
+                ShardCoordinator.ShardResult result = compute(id, from, to);
+                if (!outputDir.isEmpty()) {
+                    writeSegment(Path.of(outputDir), id, from, to);
+                }
+                long nanos = System.nanoTime() - begin;
+
+                FizzBuzz.Summary summary = result.summary();
+                out.writeInt(id);
+                out.writeLong(summary.fizz());
+                out.writeLong(summary.buzz());
+                out.writeLong(summary.fizzBuzz());
+                out.writeLong(summary.numbers());
+                out.writeLong(summary.numberSum());
+                out.writeLong(result.checksum());
+                out.writeLong(nanos);
+                out.flush();
+            }
+        }
+    }
+
+    /**
+     * Writes the segment file of the given shard. The text goes into a temporary file
+     * first, which is then renamed, so that the segment is either complete or missing
+     * even if another worker, e.g. one which timed out with the same shard before,
+     * is writing it at the same time.
+     */
+    private static void writeSegment(Path outputDir, int id, long from, long to) throws IOException {
+        Path segment = outputDir.resolve(segmentFileName(id));
+        Path temp = Files.createTempFile(outputDir, segment.getFileName().toString(), ".tmp");
+
+        try {
+            new FizzBuzzFileWriter().write(temp, from, to);
+            Files.move(temp, segment, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the result of the numbers {@code [from, to)}, with {@code from} being
+     * positive.
+     */
+    public ShardCoordinator.ShardResult compute(int id, long from, long to) {
+        long begin = System.nanoTime();
+        long fizz = 0;
+        long buzz = 0;
+        long fizzBuzz = 0;
+        long numbers = 0;
+        long numberSum = 0;
+        long checksum = 0;
+
+        for (long value = from; value < to; ) {
+            int len = (int) Math.min(BLOCK_SIZE, to - value);
+            this.fizzBuzz.fizzBuzzRange(value, len, block);
+
+            var sums = LongVector.broadcast(SPECIES, 0);
+            var checksums = LongVector.broadcast(SPECIES, 0);
+            var values = LongVector.broadcast(SPECIES, value).addIndex(1);
+            int i = 0;
+
+            int upperBound = SPECIES.loopBound(len);
+            for (; i < upperBound; i += SPECIES.length()) {
+                var results = LongVector.fromArray(SPECIES, block, i);
+                var numberMask = results.compare(VectorOperators.GT, 0);
+
+                fizz += results.compare(VectorOperators.EQ, -1).trueCount();
+                buzz += results.compare(VectorOperators.EQ, -2).trueCount();
+                fizzBuzz += results.compare(VectorOperators.EQ, -3).trueCount();
+                numbers += numberMask.trueCount();
+
+                sums = sums.add(results, numberMask);
+                checksums = checksums.add(results.mul(values));
+                values = values.add(SPECIES.length());
+            }
+
+            numberSum += sums.reduceLanes(VectorOperators.ADD);
+            checksum += checksums.reduceLanes(VectorOperators.ADD);
+
+            for (; i < len; i++) {
+                long result = block[i];
+                if (result == -1) {
+                    fizz++;
+                }
+                else if (result == -2) {
+                    buzz++;
+                }
+                else if (result == -3) {
+                    fizzBuzz++;
+                }
+                else {
+                    numbers++;
+                    numberSum += result;
+                }
+                checksum += result * (value + i);
+            }
+
+            value += len;
+        }
+
+        return new ShardCoordinator.ShardResult(id, new FizzBuzz.Summary(fizz, buzz, fizzBuzz, numbers, numberSum), checksum,
+                name, System.nanoTime() - begin);
+    }
+}
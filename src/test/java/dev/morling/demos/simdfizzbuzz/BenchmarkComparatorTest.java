@@ -0,0 +1,104 @@
+/**
+ *  Copyright 2021 Gunnar Morling
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package dev.morling.demos.simdfizzbuzz;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.data.Offset.offset;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import dev.morling.demos.simdfizzbuzz.BenchmarkComparator.Comparison;
+import dev.morling.demos.simdfizzbuzz.BenchmarkComparator.Score;
+
+public class BenchmarkComparatorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readsJmhResults() {
+        Map<String, Score> scores = BenchmarkComparator.scores("""
+                [
+                    {
+                        "jmhVersion" : "1.33",
+                        "benchmark" : "dev.morling.demos.simdfizzbuzz.FizzBuzzSweepBenchmark.simdFizzBuzz",
+                        "mode" : "avgt",
+                        "threads" : 1,
+                        "jvmArgs" : [ "--add-modules=jdk.incubator.vector" ],
+                        "params" : { "offset" : "1", "arrayLength" : "1031" },
+                        "primaryMetric" : {
+                            "score" : 0.125,
+                            "scoreError" : "NaN",
+                            "scoreConfidence" : [ "NaN", "NaN" ],
+                            "scoreUnit" : "us/op",
+                            "rawData" : [ [ 0.125 ] ]
+                        },
+                        "secondaryMetrics" : { }
+                    }
+                ]
+                """);
+
+        assertThat(scores).containsExactly(Map.entry(
+                "dev.morling.demos.simdfizzbuzz.FizzBuzzSweepBenchmark.simdFizzBuzz{arrayLength=1031, offset=1} avgt",
+                new Score(0.125, 0, "us/op")));
+    }
+
+    @Test
+    public void flagsRegressions() throws Exception {
+        Path baseline = write("baseline.json",
+                result("throughputSame", "thrpt", 100, 2),
+                result("throughputWorse", "thrpt", 100, 2),
+                result("throughputNoisy", "thrpt", 100, 30),
+                result("timeWorse", "avgt", 10, 0.1),
+                result("timeBetter", "avgt", 10, 0.1),
+                result("onlyInBaseline", "avgt", 10, 0.1));
+        Path candidate = write("candidate.json",
+                result("throughputSame", "thrpt", 99, 2),
+                result("throughputWorse", "thrpt", 80, 2),
+                result("throughputNoisy", "thrpt", 80, 30),
+                result("timeWorse", "avgt", 12, 0.1),
+                result("timeBetter", "avgt", 8, 0.1));
+
+        List<Comparison> comparisons = BenchmarkComparator.compare(baseline, candidate);
+
+        assertThat(comparisons).hasSize(5);
+        assertThat(comparisons)
+                .filteredOn(c -> c.isRegression(0.05))
+                .extracting(Comparison::benchmark)
+                .containsExactly("throughputWorse", "timeWorse");
+
+        assertThat(comparisons.get(4).change()).isCloseTo(0.2, offset(0.0001));
+    }
+
+    private Path write(String name, String... results) throws Exception {
+        Path file = folder.getRoot().toPath().resolve(name);
+        Files.writeString(file, "[" + String.join(",", results) + "]");
+        return file;
+    }
+
+    private static String result(String benchmark, String mode, double score, double error) {
+        return """
+                { "benchmark" : "%s", "mode" : "%s", "primaryMetric" : { "score" : %s, "scoreError" : %s, "scoreUnit" : "ops/us" } }
+                """.formatted(benchmark, mode, score, error);
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ *  Copyright 2021 Gunnar Morling
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package dev.morling.demos.simdfizzbuzz;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+public class FizzBuzzCoalescerTest {
+
+    @Test
+    public void concurrentRequests() throws Exception {
+        var fizzBuzz = new FizzBuzz();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try (var coalescer = new FizzBuzzCoalescer(fizzBuzz, 256, Duration.ofMillis(1))) {
+            List<Future<?>> tasks = new ArrayList<>();
+
+            for (int t = 0; t < 8; t++) {
+                int seed = t;
+                tasks.add(executor.submit(() -> {
+                    var random = new Random(seed);
+                    for (int i = 0; i < 500; i++) {
+                        // includes empty requests and ones exceeding the batch size
+                        var values = random.ints(random.nextInt(300)).toArray();
+                        assertThat(coalescer.submit(values).join()).isEqualTo(fizzBuzz.serialFizzBuzz(values));
+                    }
+                    return null;
+                }));
+            }
+
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void gathersRequestsIntoOneBatch() throws Exception {
+        var fizzBuzz = new FizzBuzz();
+
+        try (var coalescer = new FizzBuzzCoalescer(fizzBuzz, 1024, Duration.ofSeconds(1))) {
+            List<CompletableFuture<int[]>> results = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                results.add(coalescer.submit(IntStream.range(i * 10, i * 10 + 10).toArray()));
+            }
+
+            for (int i = 0; i < 10; i++) {
+                assertThat(results.get(i).join()).isEqualTo(fizzBuzz.serialFizzBuzz(IntStream.range(i * 10, i * 10 + 10).toArray()));
+            }
+            assertThat(coalescer.batches()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void runsBatchOnceFull() throws Exception {
+        var fizzBuzz = new FizzBuzz();
+
+        try (var coalescer = new FizzBuzzCoalescer(fizzBuzz, 20, Duration.ofMinutes(1))) {
+            var first = coalescer.submit(IntStream.range(1, 11).toArray());
+            var second = coalescer.submit(IntStream.range(11, 21).toArray());
+
+            assertThat(first.get()).isEqualTo(fizzBuzz.serialFizzBuzz(IntStream.range(1, 11).toArray()));
+            assertThat(second.get()).isEqualTo(fizzBuzz.serialFizzBuzz(IntStream.range(11, 21).toArray()));
+        }
+    }
+
+    @Test
+    public void closeRunsPendingRequests() throws Exception {
+        var fizzBuzz = new FizzBuzz();
+        var coalescer = new FizzBuzzCoalescer(fizzBuzz, 1024, Duration.ofMinutes(1));
+
+        var result = coalescer.submit(IntStream.range(1, 16).toArray());
+        coalescer.close();
+
+        assertThat(result).isDone();
+        assertThat(result.join()).isEqualTo(fizzBuzz.serialFizzBuzz(IntStream.range(1, 16).toArray()));
+        assertThatThrownBy(() -> coalescer.submit(new int[]{ 1 })).isInstanceOf(IllegalStateException.class);
+    }
+}
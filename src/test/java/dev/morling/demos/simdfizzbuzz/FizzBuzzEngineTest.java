@@ -0,0 +1,156 @@
+/**
+ *  Copyright 2021 Gunnar Morling
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package dev.morling.demos.simdfizzbuzz;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import dev.morling.demos.simdfizzbuzz.FizzBuzzEngine.Kernel;
+import dev.morling.demos.simdfizzbuzz.FizzBuzzEngine.Profile;
+
+public class FizzBuzzEngineTest {
+
+    @ClassRule
+    public static TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void configureEngine() throws Exception {
+        System.setProperty(FizzBuzzEngine.CALIBRATION_MILLIS_PROPERTY, "1");
+    }
+
+    @Test
+    public void fizzBuzzForAllSizeClasses() {
+        var fizzBuzz = new FizzBuzz();
+
+        for (int size : new int[] { 0, 1, 64, 65, 1000, 1025, 65536, 100_003 }) {
+            var values = IntStream.range(1, size + 1).toArray();
+            assertThat(FizzBuzzEngine.fizzBuzz(values)).describedAs("size " + size).isEqualTo(fizzBuzz.serialFizzBuzz(values));
+        }
+    }
+
+    @Test
+    public void persistsProfile() throws Exception {
+        Path profileFile = folder.getRoot().toPath().resolve("engine-profile.properties");
+        Profile profile = FizzBuzzEngine.loadOrCalibrate(new FizzBuzz(), profileFile);
+
+        assertThat(profileFile).exists();
+        assertThat(FizzBuzzEngine.load(profileFile)).isEqualTo(profile);
+
+        Files.writeString(profileFile, Files.readString(profileFile).replaceAll("kernel\\.(\\d+)=\\w+", "kernel.$1=SERIAL"));
+        assertThat(FizzBuzzEngine.loadOrCalibrate(new FizzBuzz(), profileFile).kernels()).containsOnly(Kernel.SERIAL);
+    }
+
+    @Test
+    public void doesNotPersistProfileByDefault() throws Exception {
+        Path home = folder.newFolder().toPath();
+        Path java = Path.of(System.getProperty("java.home"), "bin", "java");
+        Process process = new ProcessBuilder(java.toString(), "--add-modules", "jdk.incubator.vector", "-cp",
+                System.getProperty("java.class.path"), "-Duser.home=" + home, "-D" + FizzBuzzEngine.CALIBRATION_MILLIS_PROPERTY + "=1",
+                EngineProcess.class.getName())
+                        .redirectErrorStream(true)
+                        .start();
+
+        String output = new String(process.getInputStream().readAllBytes());
+
+        assertThat(process.waitFor()).describedAs(output).isZero();
+        try (var files = Files.list(home)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    public void calibrate() {
+        Profile profile = FizzBuzzEngine.calibrate(new FizzBuzz(), Duration.ofMillis(1));
+
+        assertThat(profile.kernels()).hasSameSizeAs(FizzBuzzEngine.SIZE_CLASSES).doesNotContainNull();
+    }
+
+    @Test
+    public void saveAndLoad() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("nested").resolve("profile.properties");
+        Profile profile = new Profile(List.of(Kernel.SERIAL_MASKED, Kernel.SIMD, Kernel.SIMD_SEPARATE_MASK_INDEX, Kernel.SIMD_ANY_SPECIES));
+
+        FizzBuzzEngine.save(profile, file);
+
+        assertThat(FizzBuzzEngine.load(file)).isEqualTo(profile);
+        assertThat(profile.kernelFor(10)).isEqualTo(Kernel.SERIAL_MASKED);
+        assertThat(profile.kernelFor(1_000_000)).isEqualTo(Kernel.SIMD_ANY_SPECIES);
+    }
+
+    @Test
+    public void ignoresProfileOfOtherHost() throws Exception {
+        Path file = folder.newFile().toPath();
+        FizzBuzzEngine.save(new Profile(List.of(Kernel.SERIAL, Kernel.SIMD, Kernel.SIMD, Kernel.SIMD)), file);
+        Files.writeString(file, Files.readString(file).replaceAll("host.processors=\\d+", "host.processors=12345"));
+
+        assertThat(FizzBuzzEngine.load(file)).isNull();
+        assertThat(FizzBuzzEngine.load(file.resolveSibling("does-not-exist"))).isNull();
+    }
+
+    @Test
+    public void allKernelsMatchSerialFizzBuzz() throws Throwable {
+        var fizzBuzz = new FizzBuzz();
+        var values = IntStream.range(1, 1001).toArray();
+
+        for (Kernel kernel : Kernel.values()) {
+            var result = new int[values.length];
+            kernel.handle(fizzBuzz).invokeExact(values, 0, result, 0, values.length);
+            assertThat(result).describedAs(kernel.toString()).isEqualTo(fizzBuzz.serialFizzBuzz(values));
+        }
+    }
+
+    @Test
+    public void usesScalarKernelWithoutVectorModule() throws Exception {
+        Path java = Path.of(System.getProperty("java.home"), "bin", "java");
+        Process process = new ProcessBuilder(java.toString(), "-cp", System.getProperty("java.class.path"),
+                EngineProcess.class.getName())
+                        .redirectErrorStream(true)
+                        .start();
+
+        String output = new String(process.getInputStream().readAllBytes());
+
+        assertThat(process.waitFor()).describedAs(output).isZero();
+        assertThat(output.strip()).isEqualTo("[SCALAR_UNROLLED, SCALAR_UNROLLED, SCALAR_UNROLLED, SCALAR_UNROLLED] 1 2 -1 4 -2 -1 7 8 -1 -2 11 -1 13 14 -3 16");
+    }
+
+    /**
+     * Run in a separate JVM: without the Vector API module by
+     * {@link #usesScalarKernelWithoutVectorModule()}, with it by
+     * {@link #doesNotPersistProfileByDefault()}.
+     */
+    public static class EngineProcess {
+
+        public static void main(String[] args) {
+            var values = IntStream.range(1, 17).toArray();
+            var result = FizzBuzzEngine.fizzBuzz(values);
+
+            System.out.println(FizzBuzzEngine.profile().kernels() + " "
+                    + Arrays.stream(result).mapToObj(String::valueOf).collect(Collectors.joining(" ")));
+        }
+    }
+}
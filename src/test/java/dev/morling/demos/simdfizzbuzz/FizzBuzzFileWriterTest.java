@@ -0,0 +1,77 @@
+/**
+ *  Copyright 2021 Gunnar Morling
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package dev.morling.demos.simdfizzbuzz;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FizzBuzzFileWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void singleWindow() throws Exception {
+        Path file = folder.newFile().toPath();
+        long size = new FizzBuzzFileWriter().write(file, 15);
+
+        assertThat(size).isEqualTo(Files.size(file));
+        assertThat(Files.readString(file)).isEqualTo("1\n2\nFizz\n4\nBuzz\nFizz\n7\n8\nFizz\nBuzz\n11\nFizz\n13\n14\nFizzBuzz\n");
+    }
+
+    @Test
+    public void severalWindows() throws Exception {
+        Path file = folder.newFile().toPath();
+        long size = new FizzBuzzFileWriter(1000, 1).write(file, 123_456);
+
+        assertThat(size).isEqualTo(Files.size(file));
+        assertThat(Files.readAllBytes(file)).isEqualTo(expected(1, 123_457));
+    }
+
+    @Test
+    public void severalWindowsInParallel() throws Exception {
+        Path file = folder.newFile().toPath();
+        long size = new FizzBuzzFileWriter(777, 4).write(file, 99_990, 1_100_000);
+
+        assertThat(size).isEqualTo(Files.size(file));
+        assertThat(Files.readAllBytes(file)).isEqualTo(expected(99_990, 1_100_000));
+    }
+
+    @Test
+    public void replacesLargerFile() throws Exception {
+        Path file = folder.newFile().toPath();
+        new FizzBuzzFileWriter().write(file, 10_000);
+        long size = new FizzBuzzFileWriter().write(file, 100);
+
+        assertThat(Files.size(file)).isEqualTo(size);
+        assertThat(Files.readAllBytes(file)).isEqualTo(expected(1, 101));
+    }
+
+    private static byte[] expected(long start, long end) {
+        var expected = new StringBuilder();
+        for (long i = start; i < end; i++) {
+            expected.append(i % 15 == 0 ? "FizzBuzz" : i % 3 == 0 ? "Fizz" : i % 5 == 0 ? "Buzz" : String.valueOf(i)).append('\n');
+        }
+        return expected.toString().getBytes(US_ASCII);
+    }
+}
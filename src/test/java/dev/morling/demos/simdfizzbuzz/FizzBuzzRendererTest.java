@@ -0,0 +1,98 @@
+/**
+ *  Copyright 2021 Gunnar Morling
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package dev.morling.demos.simdfizzbuzz;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class FizzBuzzRendererTest {
+
+    @Test
+    public void firstFifteen() {
+        var buffer = ByteBuffer.allocate(1024);
+        long lines = new FizzBuzzRenderer(1).render(buffer, 16);
+
+        assertThat(lines).isEqualTo(15);
+        assertThat(asString(buffer)).isEqualTo("1\n2\nFizz\n4\nBuzz\nFizz\n7\n8\nFizz\nBuzz\n11\nFizz\n13\n14\nFizzBuzz\n");
+    }
+
+    @Test
+    public void acrossDigitWidthBoundaries() {
+        assertRendering(1, 100_000, ByteBuffer.allocate(2 * 1024 * 1024));
+        assertRendering(999_990, 1_000_100, ByteBuffer.allocateDirect(64 * 1024));
+        assertRendering(999_999_999_999_999_000L, 1_000_000_000_000_001_000L, ByteBuffer.allocate(64 * 1024));
+        assertRendering(Long.MAX_VALUE - 1000, Long.MAX_VALUE, ByteBuffer.allocate(64 * 1024));
+    }
+
+    @Test
+    public void arbitraryStart() {
+        for (long start = 1; start <= 61; start++) {
+            assertRendering(start, start + 500, ByteBuffer.allocate(64 * 1024));
+        }
+        assertRendering(123_456_789, 123_556_789, ByteBuffer.allocateDirect(1024 * 1024));
+    }
+
+    @Test
+    public void smallBuffers() {
+        for (int capacity : new int[] { 9, 10, 64, 100, 1000 }) {
+            var renderer = new FizzBuzzRenderer(1);
+            var buffer = ByteBuffer.allocate(capacity);
+            var output = new StringBuilder();
+
+            while (renderer.next() < 5000) {
+                buffer.clear();
+                assertThat(renderer.render(buffer, 5000)).isPositive();
+                output.append(asString(buffer));
+            }
+
+            assertThat(output.toString()).isEqualTo(expected(1, 5000));
+        }
+    }
+
+    @Test
+    public void renderedLength() {
+        assertThat(FizzBuzzRenderer.renderedLength(1, 16)).isEqualTo(expected(1, 16).length());
+        assertThat(FizzBuzzRenderer.renderedLength(1, 100_000)).isEqualTo(expected(1, 100_000).length());
+        assertThat(FizzBuzzRenderer.renderedLength(98, 1003)).isEqualTo(expected(98, 1003).length());
+        assertThat(FizzBuzzRenderer.renderedLength(7, 7)).isZero();
+    }
+
+    private static void assertRendering(long start, long end, ByteBuffer buffer) {
+        long lines = new FizzBuzzRenderer(start).render(buffer, end);
+
+        assertThat(lines).isEqualTo(end - start);
+        assertThat(asString(buffer)).isEqualTo(expected(start, end));
+        assertThat(FizzBuzzRenderer.renderedLength(start, end)).isEqualTo(buffer.position());
+    }
+
+    private static String expected(long start, long end) {
+        var expected = new StringBuilder();
+        for (long i = start; i < end; i++) {
+            expected.append(i % 15 == 0 ? "FizzBuzz" : i % 3 == 0 ? "Fizz" : i % 5 == 0 ? "Buzz" : String.valueOf(i)).append('\n');
+        }
+        return expected.toString();
+    }
+
+    private static String asString(ByteBuffer buffer) {
+        var bytes = new byte[buffer.position()];
+        buffer.duplicate().flip().get(bytes);
+        return new String(bytes, US_ASCII);
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ *  Copyright 2021 Gunnar Morling
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package dev.morling.demos.simdfizzbuzz;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import dev.morling.demos.simdfizzbuzz.FizzBuzzRules.Rule;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorSpecies;
+
+public class FizzBuzzRulesTest {
+
+    private static final List<VectorSpecies<Integer>> ALL_SPECIES = List.of(
+            IntVector.SPECIES_64, IntVector.SPECIES_128, IntVector.SPECIES_256, IntVector.SPECIES_512);
+
+    private static final List<Rule> FIZZ_BUZZ_BAZZ = List.of(new Rule(3, "Fizz"), new Rule(5, "Buzz"), new Rule(7, "Bazz"));
+
+    @Test
+    public void fizzBuzzRulesMatchFizzBuzz() {
+        var values = IntStream.range(1, 1001).toArray();
+        var expected = new FizzBuzz().serialFizzBuzz(values);
+
+        for (var species : ALL_SPECIES) {
+            var rules = new FizzBuzzRules(FizzBuzzRules.FIZZ_BUZZ, species);
+
+            assertThat(rules.isTableBased()).isTrue();
+            assertThat(rules.fizzBuzz(values)).describedAs(species.toString()).isEqualTo(expected);
+            assertThat(rules.fizzBuzzByValue(values)).describedAs(species.toString()).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void fizzBuzzBazz() {
+        var values = IntStream.range(1, 1001).toArray();
+        var expected = expected(FIZZ_BUZZ_BAZZ, values);
+
+        for (var species : ALL_SPECIES) {
+            var rules = new FizzBuzzRules(FIZZ_BUZZ_BAZZ, species);
+
+            assertThat(rules.period()).isEqualTo(105);
+            assertThat(rules.fizzBuzz(values)).describedAs(species.toString()).isEqualTo(expected);
+            assertThat(rules.fizzBuzzByValue(values)).describedAs(species.toString()).isEqualTo(expected);
+        }
+
+        var result = new FizzBuzzRules(FIZZ_BUZZ_BAZZ).fizzBuzz(values);
+        assertThat(result[20]).isEqualTo(-5);
+        assertThat(result[104]).isEqualTo(-7);
+    }
+
+    @Test
+    public void largePeriodUsesDivisibilityTests() {
+        var ruleList = List.of(new Rule(7, "a"), new Rule(11, "b"), new Rule(13, "c"), new Rule(64, "d"), new Rule(1_000_003, "e"));
+        var rules = new FizzBuzzRules(ruleList);
+        var values = IntStream.range(1, 100_001).toArray();
+
+        assertThat(rules.isTableBased()).isFalse();
+        assertThat(rules.fizzBuzz(values)).isEqualTo(expected(ruleList, values));
+
+        // the period saturates rather than overflowing
+        var hugePeriod = List.of(new Rule(999_983, "a"), new Rule(1_000_003, "b"), new Rule(1_000_033, "c"), new Rule(1_000_037, "d"));
+        assertThat(new FizzBuzzRules(hugePeriod).period()).isEqualTo(Long.MAX_VALUE);
+        assertThat(new FizzBuzzRules(hugePeriod).fizzBuzz(values)).isEqualTo(expected(hugePeriod, values));
+    }
+
+    @Test
+    public void arbitraryValues() {
+        var ruleList = List.of(new Rule(2, "Even"), new Rule(6, "Six"), new Rule(7, "Seven"), new Rule(1 << 30, "Big"));
+        var values = new int[] { 0, -1, -6, -42, 42, 7, Integer.MIN_VALUE, Integer.MAX_VALUE, 1 << 30, 3 << 30, 12, 13, 14, 15, 16, 17, 18 };
+
+        for (var species : ALL_SPECIES) {
+            assertThat(new FizzBuzzRules(ruleList, species).fizzBuzzByValue(values)).describedAs(species.toString())
+                    .isEqualTo(expected(ruleList, values));
+        }
+    }
+
+    @Test
+    public void labelsByPriority() {
+        var rules = new FizzBuzzRules(List.of(new Rule(3, "Fizz", 1), new Rule(5, "Buzz", 0), new Rule(7, "Bazz", 1)));
+
+        assertThat(rules.label(-1)).isEqualTo("Fizz");
+        assertThat(rules.label(-3)).isEqualTo("BuzzFizz");
+        assertThat(rules.label(-7)).isEqualTo("BuzzFizzBazz");
+        assertThat(rules.label(-5)).isEqualTo("FizzBazz");
+        assertThat(rules.label(42)).isEqualTo("42");
+        assertThat(rules.label(0)).isEqualTo("0");
+        assertThat(rules.label(-8)).isEqualTo("-8");
+        assertThat(rules.label(Integer.MIN_VALUE)).isEqualTo(Integer.toString(Integer.MIN_VALUE));
+
+        var fizzBuzz = new FizzBuzzRules(FizzBuzzRules.FIZZ_BUZZ);
+        assertThat(fizzBuzz.label(-3)).isEqualTo("FizzBuzz");
+        assertThat(fizzBuzz.label(-4)).isEqualTo("-4");
+        assertThat(fizzBuzz.label(-7)).isEqualTo("-7");
+        assertThat(fizzBuzz.label(Integer.MIN_VALUE)).isEqualTo(Integer.toString(Integer.MIN_VALUE));
+
+        var manyRules = new ArrayList<Rule>();
+        for (int i = 0; i < 12; i++) {
+            manyRules.add(new Rule(i + 2, "r" + i, -i));
+        }
+        assertThat(new FizzBuzzRules(manyRules).label(-(1 | 1 << 11))).isEqualTo("r11r0");
+        assertThat(new FizzBuzzRules(manyRules).label(-(1 << 12))).isEqualTo(Integer.toString(-(1 << 12)));
+        assertThat(new FizzBuzzRules(manyRules).label(Integer.MIN_VALUE)).isEqualTo(Integer.toString(Integer.MIN_VALUE));
+    }
+
+    @Test
+    public void invalidRules() {
+        assertThatThrownBy(() -> new Rule(0, "Zero")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new FizzBuzzRules(List.of())).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static int[] expected(List<Rule> rules, int[] values) {
+        int[] expected = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            int code = 0;
+            for (int r = 0; r < rules.size(); r++) {
+                if (values[i] % rules.get(r).divisor() == 0) {
+                    code -= 1 << r;
+                }
+            }
+            expected[i] = code != 0 ? code : values[i];
+        }
+        return expected;
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ *  Copyright 2021 Gunnar Morling
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package dev.morling.demos.simdfizzbuzz;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Test;
+
+public class FizzBuzzStreamerTest {
+
+    @Test
+    public void streamToPipe() throws Exception {
+        assertStreaming(new FizzBuzzStreamer(1024, 2, 1), 1, 100_000);
+    }
+
+    @Test
+    public void streamToPipeWithSeveralComputeThreads() throws Exception {
+        assertStreaming(new FizzBuzzStreamer(4096, 3, 4), 999_000, 1_234_567);
+    }
+
+    @Test
+    public void reuse() throws Exception {
+        var streamer = new FizzBuzzStreamer(1000, 4, 2);
+
+        assertStreaming(streamer, 1, 10_000);
+        assertStreaming(streamer, 7, 50_000);
+        assertStreaming(streamer, 5, 6);
+    }
+
+    @Test
+    public void streamSmallNumbersWithSmallBuffers() throws Exception {
+        // "FizzBuzz" and "Fizz"/"Buzz" lines are longer than the numbers here
+        assertStreaming(new FizzBuzzStreamer(4096, 4, 1), 1, 10_000);
+        assertStreaming(new FizzBuzzStreamer(600, 4, 2), 1000, 2000);
+        assertStreaming(new FizzBuzzStreamer(600, 2, 1), 1, 1000);
+    }
+
+    @Test
+    public void propagatesWriteFailure() {
+        var streamer = new FizzBuzzStreamer(1024, 2, 2);
+
+        WritableByteChannel failing = new WritableByteChannel() {
+
+            private int writes;
+
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                if (++writes == 3) {
+                    throw new IOException("Broken pipe");
+                }
+                int written = src.remaining();
+                src.position(src.limit());
+                return written;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        assertThatThrownBy(() -> streamer.stream(1, 1_000_000, failing))
+                .isInstanceOf(IOException.class)
+                .hasMessage("Broken pipe");
+    }
+
+    private static void assertStreaming(FizzBuzzStreamer streamer, long start, long end) throws Exception {
+        Pipe pipe = Pipe.open();
+
+        CompletableFuture<byte[]> received = CompletableFuture.supplyAsync(() -> {
+            var out = new ByteArrayOutputStream();
+            var buffer = ByteBuffer.allocate(8192);
+            try (var source = pipe.source()) {
+                while (source.read(buffer) != -1) {
+                    out.write(buffer.array(), 0, buffer.position());
+                    buffer.clear();
+                }
+            }
+            catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return out.toByteArray();
+        });
+
+        long written;
+        try (var sink = pipe.sink()) {
+            written = streamer.stream(start, end, sink);
+        }
+
+        byte[] expected = expected(start, end);
+
+        assertThat(written).isEqualTo(expected.length);
+        assertThat(received.get()).isEqualTo(expected);
+    }
+
+    private static byte[] expected(long start, long end) {
+        var expected = new StringBuilder();
+        for (long i = start; i < end; i++) {
+            expected.append(i % 15 == 0 ? "FizzBuzz" : i % 3 == 0 ? "Fizz" : i % 5 == 0 ? "Buzz" : String.valueOf(i)).append('\n');
+        }
+        return expected.toString().getBytes(US_ASCII);
+    }
+}
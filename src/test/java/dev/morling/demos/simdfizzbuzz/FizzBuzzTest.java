@@ -16,11 +16,18 @@
 package dev.morling.demos.simdfizzbuzz;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 
 import org.junit.Test;
 
+import jdk.incubator.vector.IntVector;
+
 public class FizzBuzzTest {
 
     private static final int[] FIZZ_BUZZ_1_TO_100 = new int[] {
@@ -82,4 +89,304 @@ public class FizzBuzzTest {
 
         assertThat(result).isEqualTo(FIZZ_BUZZ_1_TO_100);
     }
+
+    @Test
+    public void simdFizzBuzz256() {
+        var values = IntStream.range(1, 101).toArray();
+        var result = new FizzBuzz().simdFizzBuzz256(values);
+
+        assertThat(result).isEqualTo(FIZZ_BUZZ_1_TO_100);
+    }
+
+    @Test
+    public void simdFizzBuzz128() {
+        var values = IntStream.range(1, 101).toArray();
+        var result = new FizzBuzz().simdFizzBuzz128(values);
+
+        assertThat(result).isEqualTo(FIZZ_BUZZ_1_TO_100);
+    }
+
+    @Test
+    public void serialFizzBuzzWithOffsets() {
+        var values = IntStream.range(0, 103).toArray();
+        var result = new int[105];
+        new FizzBuzz().serialFizzBuzz(values, 1, result, 5, 100);
+
+        assertThat(Arrays.copyOfRange(result, 5, 105)).isEqualTo(FIZZ_BUZZ_1_TO_100);
+        assertThat(Arrays.copyOfRange(result, 0, 5)).containsOnly(0);
+    }
+
+    @Test
+    public void simdFizzBuzzSeparateMaskIndexWithOffsets() {
+        var values = new int[107];
+        System.arraycopy(IntStream.range(1, 101).toArray(), 0, values, 3, 100);
+        var result = new int[104];
+        new FizzBuzz().simdFizzBuzzSeparateMaskIndex(values, 3, result, 1, 100);
+
+        assertThat(Arrays.copyOfRange(result, 1, 101)).isEqualTo(FIZZ_BUZZ_1_TO_100);
+        assertThat(result[0]).isZero();
+        assertThat(Arrays.copyOfRange(result, 101, 104)).containsOnly(0);
+    }
+
+    @Test
+    public void simdFizzBuzzUnrolled256() {
+        var fizzBuzz = new FizzBuzz();
+        assertThat(fizzBuzz.simdFizzBuzzUnrolled256(IntStream.range(1, 101).toArray())).isEqualTo(FIZZ_BUZZ_1_TO_100);
+
+        // around the super-block length of 120, with offsets
+        for (int len : new int[] { 0, 1, 7, 8, 119, 120, 121, 240, 359, 1000 }) {
+            var values = IntStream.range(1, len + 1).toArray();
+            var src = new int[len + 3];
+            System.arraycopy(values, 0, src, 3, len);
+            var result = new int[len + 5];
+
+            fizzBuzz.simdFizzBuzzUnrolled256(src, 3, result, 1, len);
+
+            assertThat(Arrays.copyOfRange(result, 1, len + 1)).describedAs("length " + len).isEqualTo(fizzBuzz.serialFizzBuzz(values));
+            assertThat(result[0]).isZero();
+            assertThat(Arrays.copyOfRange(result, len + 1, len + 5)).containsOnly(0);
+        }
+    }
+
+    @Test
+    public void simdFizzBuzzMaskedWithOffsets() {
+        var values = new int[110];
+        System.arraycopy(IntStream.range(1, 101).toArray(), 0, values, 7, 100);
+        var result = new int[102];
+        new FizzBuzz().simdFizzBuzzMasked(values, 7, result, 2, 100);
+
+        assertThat(Arrays.copyOfRange(result, 2, 102)).isEqualTo(FIZZ_BUZZ_1_TO_100);
+    }
+
+    @Test
+    public void inPlace() {
+        var fizzBuzz = new FizzBuzz();
+
+        var values = IntStream.range(1, 101).toArray();
+        fizzBuzz.simdFizzBuzz(values, 0, values, 0, values.length);
+        assertThat(values).isEqualTo(FIZZ_BUZZ_1_TO_100);
+
+        values = IntStream.range(1, 101).toArray();
+        fizzBuzz.simdFizzBuzzMasked(values, 0, values, 0, values.length);
+        assertThat(values).isEqualTo(FIZZ_BUZZ_1_TO_100);
+
+        values = IntStream.range(1, 101).toArray();
+        fizzBuzz.simdFizzBuzz256(values, 0, values, 0, values.length);
+        assertThat(values).isEqualTo(FIZZ_BUZZ_1_TO_100);
+
+        values = IntStream.range(1, 101).toArray();
+        fizzBuzz.simdFizzBuzz128(values, 0, values, 0, values.length);
+        assertThat(values).isEqualTo(FIZZ_BUZZ_1_TO_100);
+
+        values = IntStream.range(1, 101).toArray();
+        fizzBuzz.serialFizzBuzzMasked(values, 0, values, 0, values.length);
+        assertThat(values).isEqualTo(FIZZ_BUZZ_1_TO_100);
+    }
+
+    @Test
+    public void simdFizzBuzzAnySpecies() {
+        var values = IntStream.range(1, 101).toArray();
+
+        for (var species : List.of(IntVector.SPECIES_64, IntVector.SPECIES_128, IntVector.SPECIES_256, IntVector.SPECIES_512)) {
+            var result = new FizzBuzz(species).simdFizzBuzzAnySpecies(values);
+            assertThat(result).describedAs(species.toString()).isEqualTo(FIZZ_BUZZ_1_TO_100);
+        }
+    }
+
+    @Test
+    public void simdFizzBuzzAnySpeciesSpanningSeveralPeriods() {
+        var values = IntStream.range(1, 1001).toArray();
+        var expected = new FizzBuzz().serialFizzBuzz(values);
+
+        for (var species : List.of(IntVector.SPECIES_64, IntVector.SPECIES_128, IntVector.SPECIES_256, IntVector.SPECIES_512)) {
+            var result = new FizzBuzz(species).simdFizzBuzzAnySpecies(values);
+            assertThat(result).describedAs(species.toString()).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void simdFizzBuzzPreferred() {
+        var values = IntStream.range(1, 1001).toArray();
+        var expected = new FizzBuzz().serialFizzBuzz(values);
+
+        // independent of the instance's species
+        assertThat(new FizzBuzz(IntVector.SPECIES_64).simdFizzBuzzPreferred(values)).isEqualTo(expected);
+        assertThat(new FizzBuzz().simdFizzBuzzPreferred(values)).isEqualTo(expected);
+    }
+
+    @Test
+    public void simdFizzBuzzByValue() {
+        var values = IntStream.range(1, 101).toArray();
+        var result = new FizzBuzz().simdFizzBuzzByValue(values);
+
+        assertThat(result).isEqualTo(FIZZ_BUZZ_1_TO_100);
+    }
+
+    @Test
+    public void simdFizzBuzzByValueArbitraryValues() {
+        var fizzBuzz = new FizzBuzz();
+
+        var values = new Random(42).ints(10_000).toArray();
+        assertThat(fizzBuzz.simdFizzBuzzByValue(values)).isEqualTo(fizzBuzz.serialFizzBuzz(values));
+
+        values = IntStream.concat(
+                IntStream.of(0, Integer.MIN_VALUE, Integer.MIN_VALUE + 1, Integer.MAX_VALUE, Integer.MAX_VALUE - 2),
+                IntStream.range(-1000, 1000))
+                .toArray();
+        assertThat(fizzBuzz.simdFizzBuzzByValue(values)).isEqualTo(fizzBuzz.serialFizzBuzz(values));
+    }
+
+    @Test
+    public void fizzBuzzRange() {
+        var result = new int[100];
+        new FizzBuzz().fizzBuzzRange(1, 100, result);
+
+        assertThat(result).isEqualTo(FIZZ_BUZZ_1_TO_100);
+    }
+
+    @Test
+    public void fizzBuzzRangeArbitraryStart() {
+        for (var species : List.of(IntVector.SPECIES_64, IntVector.SPECIES_128, IntVector.SPECIES_256, IntVector.SPECIES_512)) {
+            var fizzBuzz = new FizzBuzz(species);
+
+            for (long start : new long[] { -1000, -1, 0, 2, 7, 16, 1_000_003, Integer.MIN_VALUE, Integer.MAX_VALUE - 299L }) {
+                for (int count : new int[] { 0, 1, 5, 17, 300 }) {
+                    var expected = fizzBuzz.serialFizzBuzz(LongStream.range(start, start + count).mapToInt(l -> (int) l).toArray());
+                    var result = new int[count + 2];
+                    fizzBuzz.fizzBuzzRange(start, count, result, 2);
+
+                    assertThat(Arrays.copyOfRange(result, 2, count + 2))
+                            .describedAs(species + ", start " + start + ", count " + count)
+                            .isEqualTo(expected);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void fizzBuzzRangeOutOfIntBounds() {
+        assertThatThrownBy(() -> new FizzBuzz().fizzBuzzRange(Integer.MAX_VALUE, 2, new int[2]))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new FizzBuzz().fizzBuzzRange(Integer.MIN_VALUE - 1L, 2, new int[2]))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new FizzBuzz().fizzBuzzRange(Long.MAX_VALUE, 2, new int[2]))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new FizzBuzz().fizzBuzzRange(Long.MIN_VALUE, 2, new int[2]))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        // the last value of the range may be Integer.MAX_VALUE
+        int[] result = new int[2];
+        new FizzBuzz().fizzBuzzRange(Integer.MAX_VALUE - 1L, 2, result);
+        assertThat(result).containsExactly(new FizzBuzz().serialFizzBuzz(new int[] { Integer.MAX_VALUE - 1, Integer.MAX_VALUE }));
+    }
+
+    @Test
+    public void summarizeRange() {
+        for (long start : new long[] { -1000, -1, 0, 1, 2, 7, 16, 1_000_003, Integer.MIN_VALUE, Integer.MAX_VALUE - 299L }) {
+            for (int count : new int[] { 0, 1, 5, 17, 300 }) {
+                var values = LongStream.range(start, start + count).mapToInt(l -> (int) l).toArray();
+
+                assertThat(FizzBuzz.summarizeRange(start, count))
+                        .describedAs("start " + start + ", count " + count)
+                        .isEqualTo(summaryOf(values, new FizzBuzz().serialFizzBuzz(values)));
+            }
+        }
+    }
+
+    @Test
+    public void summarizeRangeBeyondIntValues() {
+        var summary = FizzBuzz.summarizeRange(1, 3_000_000_000L);
+
+        assertThat(summary.fizzBuzz()).isEqualTo(200_000_000L);
+        assertThat(summary.fizz()).isEqualTo(800_000_000L);
+        assertThat(summary.buzz()).isEqualTo(400_000_000L);
+        assertThat(summary.numbers()).isEqualTo(1_600_000_000L);
+        // sum of all values, minus those of all multiples of 3 and 5, plus those of the multiples of 15
+        assertThat(summary.numberSum()).isEqualTo(4_500_000_001_500_000_000L - 1_500_000_001_500_000_000L
+                - 900_000_001_500_000_000L + 300_000_001_500_000_000L);
+
+        assertThatThrownBy(() -> FizzBuzz.summarizeRange(1, Long.MAX_VALUE))
+                .isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> FizzBuzz.summarizeRange(Long.MAX_VALUE, 2))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void simdFizzBuzzSummary() {
+        var fizzBuzz = new FizzBuzz();
+
+        for (int count : new int[] { 0, 1, 7, 8, 100, 32_768, 100_003 }) {
+            var values = IntStream.range(1, count + 1).toArray();
+            var src = new int[count + 3];
+            System.arraycopy(values, 0, src, 3, count);
+
+            assertThat(fizzBuzz.simdFizzBuzzSummary(src, 3, count))
+                    .describedAs("count " + count)
+                    .isEqualTo(summaryOf(values, fizzBuzz.serialFizzBuzz(values)));
+        }
+    }
+
+    @Test
+    public void simdFizzBuzzSummaryOfLargeValues() {
+        var fizzBuzz = new FizzBuzz();
+
+        // the first value needs to be at position 0 of the FizzBuzz period, i.e. 1 mod 15
+        int start = (Integer.MAX_VALUE - 100_000) / 15 * 15 + 1;
+        var values = IntStream.range(start, start + 100_000).toArray();
+
+        assertThat(fizzBuzz.simdFizzBuzzSummary(values, 0, values.length))
+                .isEqualTo(summaryOf(values, fizzBuzz.serialFizzBuzz(values)))
+                .isEqualTo(FizzBuzz.summarizeRange(start, values.length));
+    }
+
+    @Test
+    public void simdFizzBuzzByValueSummary() {
+        var random = new Random(42);
+        var values = IntStream.concat(
+                IntStream.of(0, 1, -1, -2, -3, 15, -15, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE + 1),
+                random.ints(100_000))
+                .toArray();
+
+        for (var species : List.of(IntVector.SPECIES_64, IntVector.SPECIES_128, IntVector.SPECIES_256, IntVector.SPECIES_512)) {
+            var fizzBuzz = new FizzBuzz(species);
+
+            for (int count : new int[] { 0, 9, 1_000, values.length - 1 }) {
+                assertThat(fizzBuzz.simdFizzBuzzByValueSummary(values, 1, count))
+                        .describedAs(species + ", count " + count)
+                        .isEqualTo(summaryOf(Arrays.copyOfRange(values, 1, count + 1),
+                                fizzBuzz.serialFizzBuzz(Arrays.copyOfRange(values, 1, count + 1))));
+            }
+        }
+    }
+
+    /**
+     * Aggregates the given results of {@link FizzBuzz#serialFizzBuzz(int[])}; an
+     * element is a plain number if its result is the value itself, as the values of the
+     * sentinels aren't multiples of 3 or 5 themselves.
+     */
+    private static FizzBuzz.Summary summaryOf(int[] values, int[] results) {
+        long fizz = 0;
+        long buzz = 0;
+        long fizzBuzz = 0;
+        long numbers = 0;
+        long sum = 0;
+
+        for (int i = 0; i < values.length; i++) {
+            if (results[i] == values[i]) {
+                numbers++;
+                sum += values[i];
+            }
+            else if (results[i] == -1) {
+                fizz++;
+            }
+            else if (results[i] == -2) {
+                buzz++;
+            }
+            else {
+                fizzBuzz++;
+            }
+        }
+
+        return new FizzBuzz.Summary(fizz, buzz, fizzBuzz, numbers, sum);
+    }
 }
@@ -0,0 +1,134 @@
+/**
+ *  Copyright 2021 Gunnar Morling
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package dev.morling.demos.simdfizzbuzz;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FizzBuzzVerifierTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void matchingText() throws Exception {
+        Path file = folder.newFile().toPath();
+        new FizzBuzzFileWriter(1000, 1).write(file, 99_990, 300_000);
+
+        assertThat(new FizzBuzzVerifier().verifyText(file, 99_990)).isEqualTo(-1);
+        assertThat(new FizzBuzzVerifier(777, 4).verifyText(file, 99_990)).isEqualTo(-1);
+        assertThat(new FizzBuzzVerifier().verifyText(file, 99_991)).isZero();
+
+        Files.write(file, new byte[0]);
+        assertThat(new FizzBuzzVerifier().verifyText(file, 1)).isEqualTo(-1);
+    }
+
+    @Test
+    public void mismatchingText() throws Exception {
+        Path file = folder.newFile().toPath();
+        new FizzBuzzFileWriter().write(file, 100_000);
+        byte[] contents = Files.readAllBytes(file);
+
+        // "Fizz" of 99,999 becomes "Fuzz"; the first mismatch wins over a later one
+        int offset = (int) FizzBuzzRenderer.renderedLength(1, 99_999) + 1;
+        contents[offset] = 'u';
+        contents[contents.length - 2] = '1';
+        Files.write(file, contents);
+
+        assertThat(new FizzBuzzVerifier().verifyText(file, 1)).isEqualTo(offset);
+        assertThat(new FizzBuzzVerifier(1000, 4).verifyText(file, 1)).isEqualTo(offset);
+    }
+
+    @Test
+    public void truncatedText() throws Exception {
+        Path file = folder.newFile().toPath();
+        new FizzBuzzFileWriter().write(file, 1000);
+        byte[] contents = Files.readAllBytes(file);
+
+        // ends within the line of 1000, "Buzz\n"
+        Files.write(file, Arrays.copyOf(contents, contents.length - 2));
+        assertThat(new FizzBuzzVerifier().verifyText(file, 1)).isEqualTo(contents.length - 2);
+
+        // ends with a line which is too long
+        Files.write(file, Arrays.copyOf(contents, contents.length + 1));
+        assertThat(new FizzBuzzVerifier().verifyText(file, 1)).isEqualTo(contents.length);
+    }
+
+    @Test
+    public void ints() throws Exception {
+        for (ByteOrder order : new ByteOrder[] { ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN }) {
+            int start = -5000;
+            int[] expected = new int[100_000];
+            new FizzBuzz().fizzBuzzRange(start, expected.length, expected);
+
+            Path file = folder.newFile().toPath();
+            Files.write(file, toBytes(expected, order));
+
+            assertThat(new FizzBuzzVerifier().verifyInts(file, start, order)).isEqualTo(-1);
+            assertThat(new FizzBuzzVerifier(1000, 4).verifyInts(file, start, order)).isEqualTo(-1);
+
+            expected[54_321]++;
+            expected[99_000]++;
+            Files.write(file, toBytes(expected, order));
+
+            assertThat(new FizzBuzzVerifier().verifyInts(file, start, order)).isEqualTo(54_321 * 4);
+            assertThat(new FizzBuzzVerifier(1000, 4).verifyInts(file, start, order)).isEqualTo(54_321 * 4);
+        }
+    }
+
+    @Test
+    public void intsWithPartialLastValue() throws Exception {
+        int[] expected = new FizzBuzz().serialFizzBuzz(IntStream.range(1, 101).toArray());
+        Path file = folder.newFile().toPath();
+        Files.write(file, Arrays.copyOf(toBytes(expected, ByteOrder.LITTLE_ENDIAN), 402));
+
+        assertThat(new FizzBuzzVerifier().verifyInts(file, 1, ByteOrder.LITTLE_ENDIAN)).isEqualTo(400);
+    }
+
+    @Test
+    public void mismatchOfBlocks() {
+        byte[] expected = new byte[1000];
+        Arrays.fill(expected, (byte) 'x');
+        ByteBuffer actual = ByteBuffer.allocateDirect(1003);
+        for (int i = 0; i < 1003; i++) {
+            actual.put(i, (byte) 'x');
+        }
+
+        assertThat(FizzBuzzVerifier.mismatch(actual, 3, expected, 1000)).isEqualTo(-1);
+
+        for (int index : new int[] { 0, 17, 63, 64, 999 }) {
+            actual.put(3 + index, (byte) 'y');
+            assertThat(FizzBuzzVerifier.mismatch(actual, 3, expected, 1000)).isEqualTo(index);
+            actual.put(3 + index, (byte) 'x');
+        }
+    }
+
+    private static byte[] toBytes(int[] values, ByteOrder order) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * Integer.BYTES).order(order);
+        buffer.asIntBuffer().put(values);
+        return buffer.array();
+    }
+}
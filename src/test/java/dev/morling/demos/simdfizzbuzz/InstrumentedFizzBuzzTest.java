@@ -0,0 +1,98 @@
+/**
+ *  Copyright 2021 Gunnar Morling
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package dev.morling.demos.simdfizzbuzz;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import dev.morling.demos.simdfizzbuzz.InstrumentedFizzBuzz.KernelSnapshot;
+import jdk.incubator.vector.IntVector;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class InstrumentedFizzBuzzTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void recordsKernelMetrics() {
+        var fizzBuzz = new InstrumentedFizzBuzz(IntVector.SPECIES_128);
+        var values = IntStream.range(1, 101).toArray();
+
+        assertThat(fizzBuzz.simdFizzBuzzSeparateMaskIndex(values)).isEqualTo(new FizzBuzz().serialFizzBuzz(values));
+        fizzBuzz.simdFizzBuzzSeparateMaskIndex(values, 0, new int[20], 0, 20);
+        fizzBuzz.simdFizzBuzzAnySpecies(values);
+        fizzBuzz.fizzBuzzRange(3, 10, new int[10]);
+
+        var snapshot = fizzBuzz.snapshot();
+
+        KernelSnapshot separateMaskIndex = snapshot.get("simdFizzBuzzSeparateMaskIndex");
+        assertThat(separateMaskIndex.calls()).isEqualTo(2);
+        assertThat(separateMaskIndex.elements()).isEqualTo(120);
+        assertThat(separateMaskIndex.tailElements()).isEqualTo(4 + 4);
+        assertThat(separateMaskIndex.latencies().count()).isEqualTo(2);
+        assertThat(separateMaskIndex.totalNanos()).isGreaterThan(0);
+
+        // four lanes, so no tail for 100 elements
+        assertThat(snapshot.get("simdFizzBuzzAnySpecies").tailElements()).isEqualTo(0);
+
+        // 3 is at position 2, i.e. two elements before the first vector boundary and 0 after the last one
+        assertThat(snapshot.get("fizzBuzzRange").tailElements()).isEqualTo(2);
+
+        // the tails of the SIMD kernels aren't recorded as serial invocations
+        assertThat(snapshot.get("serialFizzBuzz").calls()).isEqualTo(0);
+    }
+
+    @Test
+    public void recordsPreferred() {
+        var fizzBuzz = new InstrumentedFizzBuzz();
+        fizzBuzz.simdFizzBuzzPreferred(IntStream.range(1, 31).toArray());
+
+        var snapshot = fizzBuzz.snapshot();
+        assertThat(snapshot.get("simdFizzBuzzPreferred").calls()).isEqualTo(1);
+        assertThat(snapshot.get("simdFizzBuzzPreferred").tailElements()).isEqualTo(30 % IntVector.SPECIES_PREFERRED.length());
+        assertThat(snapshot.get("simdFizzBuzzAnySpecies").calls()).isEqualTo(0);
+    }
+
+    @Test
+    public void emitsJfrEvents() throws Exception {
+        var fizzBuzz = new InstrumentedFizzBuzz();
+        Path file = folder.getRoot().toPath().resolve("recording.jfr");
+
+        try (var recording = new Recording()) {
+            recording.enable(FizzBuzzEvent.NAME);
+            recording.start();
+            fizzBuzz.serialFizzBuzz(IntStream.range(1, 18).toArray());
+            fizzBuzz.simdFizzBuzzMasked(IntStream.range(1, 18).toArray());
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        assertThat(events).extracting(e -> e.getString("kernel")).containsExactly("serialFizzBuzz", "simdFizzBuzzMasked");
+        assertThat(events).extracting(e -> e.getInt("length")).containsExactly(17, 17);
+        assertThat(events).extracting(e -> e.getInt("tailLength")).containsExactly(17, 0);
+    }
+}
@@ -0,0 +1,59 @@
+/**
+ *  Copyright 2021 Gunnar Morling
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package dev.morling.demos.simdfizzbuzz;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsAreContiguous() {
+        for (int bucket = 0; bucket < LatencyHistogram.BUCKETS; bucket++) {
+            long lowest = LatencyHistogram.lowestValueOf(bucket);
+            long highest = LatencyHistogram.highestValueOf(bucket);
+
+            assertThat(LatencyHistogram.bucketOf(lowest)).isEqualTo(bucket);
+            assertThat(LatencyHistogram.bucketOf(highest)).isEqualTo(bucket);
+            // relative error of at most 12.5%
+            assertThat(highest - lowest).isLessThanOrEqualTo(Math.max(0, lowest / 8));
+
+            if (bucket > 0) {
+                assertThat(LatencyHistogram.highestValueOf(bucket - 1)).isEqualTo(lowest - 1);
+            }
+        }
+    }
+
+    @Test
+    public void percentiles() {
+        var histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+
+        var snapshot = histogram.snapshot();
+
+        assertThat(snapshot.count()).isEqualTo(1002);
+        assertThat(snapshot.valueAtPercentile(0)).isEqualTo(0);
+        assertThat(snapshot.valueAtPercentile(50)).isBetween(500L, 500L + 500 / 8);
+        assertThat(snapshot.valueAtPercentile(99)).isBetween(990L, 990L + 990 / 8);
+        assertThat(snapshot.max()).isGreaterThanOrEqualTo(LatencyHistogram.MAX_VALUE);
+        assertThat(new LatencyHistogram().snapshot().valueAtPercentile(99)).isEqualTo(0);
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ *  Copyright 2021 Gunnar Morling
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package dev.morling.demos.simdfizzbuzz;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LoadDriverTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void options() {
+        var defaults = LoadDriver.Options.defaults();
+        assertThat(defaults.kernel()).isEqualTo("simd");
+        assertThat(defaults.size()).isEqualTo(256);
+        assertThat(defaults.threads()).isEqualTo(1);
+        assertThat(defaults.iterations()).isEqualTo(5_000_000);
+        assertThat(defaults.warmupIterations()).isEqualTo(500_000);
+        assertThat(defaults.sink()).isEqualTo("blackhole");
+
+        var options = LoadDriver.Options.parse(new String[] { "--kernel", "scalar_unrolled", "--threads", "4", "--duration", "2.5" });
+        assertThat(options.kernel()).isEqualTo("scalar_unrolled");
+        assertThat(options.threads()).isEqualTo(4);
+        assertThat(options.duration()).isEqualTo(Duration.ofMillis(2500));
+        assertThat(options.warmupDuration()).isEqualTo(Duration.ofMillis(250));
+    }
+
+    @Test
+    public void kernels() {
+        int[] values = IntStream.rangeClosed(1, 1031).toArray();
+        int[] expected = new FizzBuzz().serialFizzBuzz(values);
+
+        for (FizzBuzzEngine.Kernel kernel : FizzBuzzEngine.Kernel.values()) {
+            int[] result = new int[values.length];
+            LoadDriver.kernel(kernel.name().toLowerCase()).fizzBuzz(values, 0, result, 0, values.length);
+            assertThat(result).describedAs(kernel.name()).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void checksumSink() throws Exception {
+        var options = LoadDriver.Options.parse(new String[] { "--kernel", "simd_unrolled_256", "--size", "100", "--threads", "2",
+                "--iterations", "1000", "--warmup-iterations", "50", "--sink", "checksum" });
+        var report = new LoadDriver(options).run();
+
+        long sum = Arrays.stream(new FizzBuzz().serialFizzBuzz(IntStream.rangeClosed(1, 100).toArray())).asLongStream().sum();
+
+        assertThat(report.threads()).hasSize(2);
+        for (LoadDriver.ThreadReport thread : report.threads()) {
+            assertThat(thread.warmup().iterations()).isEqualTo(50);
+            assertThat(thread.steadyState().iterations()).isEqualTo(1000);
+            assertThat(thread.steadyState().latencies().count()).isEqualTo(1000);
+            assertThat(thread.firstResultNanos()).isPositive().isGreaterThanOrEqualTo(report.constructionNanos());
+            assertThat(thread.checksum()).isEqualTo((1 + 50 + 1000) * sum);
+        }
+        assertThat(report.steadyStateLatencies().count()).isEqualTo(2000);
+        assertThat(report.steadyStateCallsPerSecond()).isPositive();
+
+        String json = report.toJson();
+        assertThat(json).startsWith("{").contains("\"firstResultNanos\"", "\"steadyState\"", "\"p99.9\"", "\"checksum\"");
+    }
+
+    @Test
+    public void fileSinkAndDuration() throws Exception {
+        Path file = folder.newFile().toPath();
+        var options = LoadDriver.Options.parse(new String[] { "--kernel", "engine", "--size", "30", "--duration", "0.2",
+                "--warmup-iterations", "10", "--sink", file.toString() });
+        var report = new LoadDriver(options).run();
+
+        var thread = report.threads().get(0);
+        assertThat(thread.steadyState().nanos()).isGreaterThanOrEqualTo(200_000_000);
+
+        long calls = 1 + thread.warmup().iterations() + thread.steadyState().iterations();
+        ByteBuffer contents = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        assertThat(contents.remaining()).isEqualTo(calls * 30 * Integer.BYTES);
+
+        int[] last = new int[30];
+        contents.position(contents.limit() - 30 * Integer.BYTES).asIntBuffer().get(last);
+        assertThat(last).isEqualTo(new FizzBuzz().serialFizzBuzz(IntStream.rangeClosed(1, 30).toArray()));
+    }
+
+    @Test(timeout = 60_000)
+    public void reportsFailureOfAnyThread() {
+        var options = LoadDriver.Options.parse(new String[] { "--size", "30", "--threads", "3", "--iterations", "1000",
+                "--warmup-iterations", "10" });
+
+        var driver = new LoadDriver(options) {
+
+            @Override
+            Sink sink(int thread, FileChannel file) {
+                if (thread != 2) {
+                    return super.sink(thread, file);
+                }
+                return results -> {
+                    throw new IOException("Disk full");
+                };
+            }
+        };
+
+        assertThatThrownBy(driver::run).isInstanceOf(IOException.class).hasMessage("Disk full");
+    }
+}
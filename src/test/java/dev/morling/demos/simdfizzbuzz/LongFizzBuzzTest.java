@@ -0,0 +1,79 @@
+/**
+ *  Copyright 2021 Gunnar Morling
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package dev.morling.demos.simdfizzbuzz;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import org.junit.Test;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorSpecies;
+
+public class LongFizzBuzzTest {
+
+    private static final List<VectorSpecies<Long>> ALL_SPECIES = List.of(
+            LongVector.SPECIES_64, LongVector.SPECIES_128, LongVector.SPECIES_256, LongVector.SPECIES_512);
+
+    @Test
+    public void matchesIntResults() {
+        var expected = Arrays.stream(new FizzBuzz().serialFizzBuzz(IntStream.range(1, 1001).toArray())).asLongStream().toArray();
+        var values = LongStream.range(1, 1001).toArray();
+
+        assertThat(new LongFizzBuzz().serialFizzBuzz(values)).isEqualTo(expected);
+
+        for (var species : ALL_SPECIES) {
+            assertThat(new LongFizzBuzz(species).simdFizzBuzz(values)).describedAs(species.toString()).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void beyondIntegerMaxValue() {
+        var result = new LongFizzBuzz().serialFizzBuzz(new long[] { 3_000_000_000L, 3_000_000_001L, 3_000_000_003L, 3_000_000_005L });
+
+        assertThat(result).containsExactly(-3, 3_000_000_001L, -1, -2);
+    }
+
+    @Test
+    public void fizzBuzzRange() {
+        for (var species : ALL_SPECIES) {
+            var fizzBuzz = new LongFizzBuzz(species);
+
+            for (long start : new long[] { 1, 7, -1000, Integer.MAX_VALUE - 100L, 10_000_000_000_003L, Long.MIN_VALUE, Long.MAX_VALUE - 299 }) {
+                for (int count : new int[] { 0, 3, 300 }) {
+                    var expected = fizzBuzz.serialFizzBuzz(LongStream.range(0, count).map(i -> start + i).toArray());
+                    var result = new long[count + 1];
+                    fizzBuzz.fizzBuzzRange(start, count, result, 1);
+
+                    assertThat(Arrays.copyOfRange(result, 1, count + 1))
+                            .describedAs(species + ", start " + start + ", count " + count)
+                            .isEqualTo(expected);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void fizzBuzzRangeOutOfLongBounds() {
+        assertThatThrownBy(() -> new LongFizzBuzz().fizzBuzzRange(Long.MAX_VALUE, 2, new long[2]))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ *  Copyright 2021 Gunnar Morling
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package dev.morling.demos.simdfizzbuzz;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import jdk.incubator.foreign.MemoryAccess;
+import jdk.incubator.foreign.MemorySegment;
+import jdk.incubator.foreign.ResourceScope;
+
+public class OffHeapFizzBuzzTest {
+
+    @Test
+    public void byteBufferKernels() {
+        var fizzBuzz = new FizzBuzz();
+        var values = IntStream.range(1, 1001).toArray();
+        var expected = fizzBuzz.serialFizzBuzz(values);
+
+        for (ByteOrder order : new ByteOrder[] { ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN }) {
+            // misaligned by one byte on purpose
+            var src = ByteBuffer.allocateDirect(values.length * 4 + 1).position(1).slice().order(order);
+            src.asIntBuffer().put(values);
+            var dst = ByteBuffer.allocateDirect(values.length * 4).order(order);
+
+            fizzBuzz.simdFizzBuzzSeparateMaskIndex(src, 0, dst, 0, values.length);
+            assertThat(toArray(dst, values.length)).describedAs(order.toString()).isEqualTo(expected);
+
+            dst = ByteBuffer.allocateDirect(values.length * 4).order(order);
+            fizzBuzz.simdFizzBuzzMasked(src, 0, dst, 0, values.length);
+            assertThat(toArray(dst, values.length)).describedAs(order.toString()).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void segmentKernelsAcrossWindows() {
+        var values = IntStream.range(1, 10_001).toArray();
+        var expected = new FizzBuzz().serialFizzBuzz(values);
+        var offHeap = new OffHeapFizzBuzz(new FizzBuzz(), 1000);
+
+        try (ResourceScope scope = ResourceScope.newConfinedScope()) {
+            for (ByteOrder order : new ByteOrder[] { ByteOrder.nativeOrder(), ByteOrder.BIG_ENDIAN }) {
+                var src = segmentOf(values, order, scope);
+                var dst = MemorySegment.allocateNative(values.length * 4L, scope);
+
+                offHeap.simdFizzBuzzSeparateMaskIndex(src, dst, order);
+                assertThat(toArray(dst, order)).describedAs(order.toString()).isEqualTo(expected);
+
+                offHeap.simdFizzBuzzMasked(src, src, order);
+                assertThat(toArray(src, order)).describedAs(order.toString()).isEqualTo(expected);
+            }
+        }
+    }
+
+    private static MemorySegment segmentOf(int[] values, ByteOrder order, ResourceScope scope) {
+        var segment = MemorySegment.allocateNative(values.length * 4L, scope);
+        for (int i = 0; i < values.length; i++) {
+            MemoryAccess.setIntAtIndex(segment, i, order, values[i]);
+        }
+        return segment;
+    }
+
+    private static int[] toArray(MemorySegment segment, ByteOrder order) {
+        var result = new int[(int) (segment.byteSize() / 4)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = MemoryAccess.getIntAtIndex(segment, i, order);
+        }
+        return result;
+    }
+
+    private static int[] toArray(ByteBuffer buffer, int length) {
+        var result = new int[length];
+        buffer.duplicate().order(buffer.order()).clear().asIntBuffer().get(result);
+        return result;
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ *  Copyright 2021 Gunnar Morling
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package dev.morling.demos.simdfizzbuzz;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorSpecies;
+
+public class PackedFizzBuzzTest {
+
+    private static final List<VectorSpecies<Integer>> ALL_SPECIES = List.of(
+            IntVector.SPECIES_64, IntVector.SPECIES_128, IntVector.SPECIES_256, IntVector.SPECIES_512);
+
+    @Test
+    public void classify() {
+        var packed = new PackedFizzBuzz().classify(IntStream.range(1, 16).toArray());
+
+        assertThat(packed).hasSize(1);
+        assertThat(PackedFizzBuzz.classAt(packed, 0)).isEqualTo(PackedFizzBuzz.NUMBER);
+        assertThat(PackedFizzBuzz.classAt(packed, 2)).isEqualTo(PackedFizzBuzz.FIZZ);
+        assertThat(PackedFizzBuzz.classAt(packed, 4)).isEqualTo(PackedFizzBuzz.BUZZ);
+        assertThat(PackedFizzBuzz.classAt(packed, 14)).isEqualTo(PackedFizzBuzz.FIZZ_BUZZ);
+    }
+
+    @Test
+    public void roundTripArbitraryValues() {
+        var values = IntStream.concat(
+                new Random(42).ints(10_007),
+                IntStream.of(0, -3, -5, -15, Integer.MIN_VALUE, Integer.MAX_VALUE))
+                .toArray();
+        var expected = new FizzBuzz().serialFizzBuzz(values);
+
+        for (var species : ALL_SPECIES) {
+            var packedFizzBuzz = new PackedFizzBuzz(species);
+            var packed = packedFizzBuzz.classify(values);
+            var decoded = new int[values.length];
+            packedFizzBuzz.decode(packed, values, 0, decoded, 0, values.length);
+
+            assertThat(decoded).describedAs(species.toString()).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void classifyRangeMatchesClassify() {
+        var packedFizzBuzz = new PackedFizzBuzz();
+
+        for (int start : new int[] { 1, 2, 14, -100, 1_000_000 }) {
+            for (int count : new int[] { 0, 1, 31, 32, 33, 480, 1000 }) {
+                var values = IntStream.range(start, start + count).toArray();
+                var packed = new long[PackedFizzBuzz.packedLength(count)];
+                packedFizzBuzz.classifyRange(start, count, packed);
+
+                assertThat(packed).describedAs("start " + start + ", count " + count).isEqualTo(packedFizzBuzz.classify(values));
+            }
+        }
+    }
+
+    @Test
+    public void decodeRange() {
+        for (var species : ALL_SPECIES) {
+            var packedFizzBuzz = new PackedFizzBuzz(species);
+
+            for (int start : new int[] { 1, 8, -50 }) {
+                var packed = new long[PackedFizzBuzz.packedLength(1003)];
+                packedFizzBuzz.classifyRange(start, 1003, packed);
+                var decoded = new int[1003];
+                packedFizzBuzz.decodeRange(packed, start, 1003, decoded);
+
+                assertThat(decoded).isEqualTo(new FizzBuzz().serialFizzBuzz(IntStream.range(start, start + 1003).toArray()));
+            }
+        }
+    }
+
+    @Test
+    public void rangesWithOffsets() {
+        var packedFizzBuzz = new PackedFizzBuzz();
+        int start = 7;
+        int count = 100;
+
+        var packed = new long[PackedFizzBuzz.packedLength(count) + 3];
+        packedFizzBuzz.classifyRange(start, count, packed, 3);
+        var values = IntStream.range(start, start + count).toArray();
+        assertThat(Arrays.copyOfRange(packed, 3, packed.length)).isEqualTo(packedFizzBuzz.classify(values));
+
+        var decoded = new int[count + 5];
+        packedFizzBuzz.decodeRange(Arrays.copyOfRange(packed, 3, packed.length), start, count, decoded, 5);
+        assertThat(Arrays.copyOfRange(decoded, 5, decoded.length)).isEqualTo(new FizzBuzz().serialFizzBuzz(values));
+    }
+
+    @Test
+    public void invalidRanges() {
+        var packedFizzBuzz = new PackedFizzBuzz();
+
+        assertThatThrownBy(() -> packedFizzBuzz.classifyRange(1, -1, new long[1]))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> packedFizzBuzz.decodeRange(new long[1], 1, -1, new int[1]))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> packedFizzBuzz.decodeRange(new long[1], Long.MAX_VALUE, 2, new int[2]))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> packedFizzBuzz.decodeRange(new long[1], Integer.MAX_VALUE, 2, new int[2]))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ *  Copyright 2021 Gunnar Morling
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package dev.morling.demos.simdfizzbuzz;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+public class ParallelFizzBuzzTest {
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    @AfterClass
+    public static void shutDownPool() {
+        POOL.shutdown();
+    }
+
+    @Test
+    public void chunkSizeIsAlignedToMaskPeriod() {
+        var fizzBuzz = new FizzBuzz();
+        var parallel = new ParallelFizzBuzz(fizzBuzz, POOL, 1000);
+
+        assertThat(parallel.chunkSize() % fizzBuzz.period()).isZero();
+        assertThat(parallel.chunkSize()).isGreaterThanOrEqualTo(1000);
+    }
+
+    @Test
+    public void fizzBuzz() {
+        var fizzBuzz = new FizzBuzz();
+        var parallel = new ParallelFizzBuzz(fizzBuzz, POOL, 1000);
+
+        for (int length : new int[] { 0, 1, 999, 1000, 12_345, 100_007 }) {
+            var values = IntStream.range(1, length + 1).toArray();
+            assertThat(parallel.fizzBuzz(values)).isEqualTo(fizzBuzz.serialFizzBuzz(values));
+        }
+    }
+
+    @Test
+    public void fizzBuzzInPlace() {
+        var fizzBuzz = new FizzBuzz();
+        var parallel = new ParallelFizzBuzz(fizzBuzz, POOL, 1000);
+
+        var values = IntStream.range(1, 50_001).toArray();
+        var expected = fizzBuzz.serialFizzBuzz(values);
+        parallel.fizzBuzz(values, 0, values, 0, values.length);
+
+        assertThat(values).isEqualTo(expected);
+    }
+
+    @Test
+    public void fizzBuzzRange() {
+        var fizzBuzz = new FizzBuzz();
+        var parallel = new ParallelFizzBuzz(fizzBuzz, POOL, 1000);
+
+        for (int start : new int[] { 1, 8, -20_000, 1_000_001 }) {
+            var expected = fizzBuzz.serialFizzBuzz(IntStream.range(start, start + 54_321).toArray());
+            var result = new int[54_321];
+            parallel.fizzBuzzRange(start, result.length, result);
+
+            assertThat(result).describedAs("start " + start).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void fizzBuzzRangeOutOfIntBounds() {
+        var parallel = new ParallelFizzBuzz(new FizzBuzz(), POOL, 1000);
+
+        assertThatThrownBy(() -> parallel.fizzBuzzRange(Long.MAX_VALUE, 2, new int[2]))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> parallel.fizzBuzzRange(Integer.MAX_VALUE, 2, new int[2]))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> parallel.fizzBuzzRange(1, -1, new int[2]))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
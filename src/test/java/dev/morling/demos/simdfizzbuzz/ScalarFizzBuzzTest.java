@@ -0,0 +1,85 @@
+/**
+ *  Copyright 2021 Gunnar Morling
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package dev.morling.demos.simdfizzbuzz;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+public class ScalarFizzBuzzTest {
+
+    @Test
+    public void fizzBuzz() {
+        var scalarFizzBuzz = new ScalarFizzBuzz();
+        var fizzBuzz = new FizzBuzz();
+
+        for (int len : new int[] { 0, 1, 14, 15, 16, 29, 30, 31, 100, 1000 }) {
+            var values = IntStream.range(1, len + 1).toArray();
+            assertThat(scalarFizzBuzz.fizzBuzz(values)).describedAs("length " + len).isEqualTo(fizzBuzz.serialFizzBuzz(values));
+        }
+    }
+
+    @Test
+    public void fizzBuzzWithOffsetsAndInPlace() {
+        var scalarFizzBuzz = new ScalarFizzBuzz();
+        var expected = new FizzBuzz().serialFizzBuzz(IntStream.range(1, 101).toArray());
+
+        var src = new int[103];
+        System.arraycopy(IntStream.range(1, 101).toArray(), 0, src, 3, 100);
+        var dst = new int[105];
+        scalarFizzBuzz.fizzBuzz(src, 3, dst, 5, 100);
+
+        assertThat(Arrays.copyOfRange(dst, 5, 105)).isEqualTo(expected);
+        assertThat(Arrays.copyOfRange(dst, 0, 5)).containsOnly(0);
+
+        scalarFizzBuzz.fizzBuzz(src, 3, src, 3, 100);
+        assertThat(Arrays.copyOfRange(src, 3, 103)).isEqualTo(expected);
+    }
+
+    @Test
+    public void fizzBuzzByteBuffer() {
+        var scalarFizzBuzz = new ScalarFizzBuzz();
+
+        for (ByteOrder srcOrder : new ByteOrder[] { ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN }) {
+            for (ByteOrder dstOrder : new ByteOrder[] { ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN }) {
+                for (int len : new int[] { 0, 7, 30, 61, 1000 }) {
+                    var values = IntStream.range(1, len + 1).toArray();
+                    var expected = new FizzBuzz().serialFizzBuzz(values);
+
+                    var src = ByteBuffer.allocateDirect((len + 1) * Integer.BYTES).order(srcOrder);
+                    for (int i = 0; i < len; i++) {
+                        src.putInt((i + 1) * Integer.BYTES, values[i]);
+                    }
+                    var dst = ByteBuffer.allocate((len + 3) * Integer.BYTES + 1).order(dstOrder);
+
+                    // unaligned destination offset
+                    scalarFizzBuzz.fizzBuzz(src, 1, dst.position(1).slice().order(dstOrder), 2, len);
+
+                    var result = new int[len];
+                    for (int i = 0; i < len; i++) {
+                        result[i] = dst.getInt(1 + (i + 2) * Integer.BYTES);
+                    }
+                    assertThat(result).describedAs(srcOrder + " -> " + dstOrder + ", length " + len).isEqualTo(expected);
+                }
+            }
+        }
+    }
+}
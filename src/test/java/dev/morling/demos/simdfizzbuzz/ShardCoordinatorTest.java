@@ -0,0 +1,266 @@
+/**
+ *  Copyright 2021 Gunnar Morling
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package dev.morling.demos.simdfizzbuzz;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ShardCoordinatorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shards() {
+        var coordinator = new ShardCoordinator(1000, 1, Duration.ofSeconds(10));
+        assertThat(coordinator.shardSize()).isEqualTo(1920);
+
+        assertThat(coordinator.shards(1, 1)).isEmpty();
+        assertThat(coordinator.shards(1, 1921)).containsExactly(new ShardCoordinator.Shard(0, 1, 1921));
+        assertThat(coordinator.shards(100, 5000)).containsExactly(
+                new ShardCoordinator.Shard(0, 100, 1921),
+                new ShardCoordinator.Shard(1, 1921, 3841),
+                new ShardCoordinator.Shard(2, 3841, 5000));
+
+        for (ShardCoordinator.Shard shard : coordinator.shards(5_000_000_123L, 5_000_100_000L).subList(1, 52)) {
+            assertThat((shard.from() - 1) % ShardCoordinator.ALIGNMENT).isZero();
+        }
+    }
+
+    @Test
+    public void run() throws Exception {
+        var coordinator = new ShardCoordinator(10_000, 1, Duration.ofSeconds(10));
+        Path output = folder.newFolder().toPath();
+        long start = 12_345;
+        long end = 300_000;
+
+        ShardCoordinator.Result result;
+        try (ServerSocket server = server()) {
+            startWorker(server, "first");
+            startWorker(server, "second");
+            result = coordinator.run(server, start, end, output);
+        }
+
+        assertThat(result.summary()).isEqualTo(ShardWorkerTest.summary(start, end));
+        assertThat(result.checksum()).isEqualTo(ShardWorkerTest.checksum(start, end));
+        assertThat(result.retries()).isZero();
+        assertThat(result.shards()).extracting(ShardCoordinator.ShardResult::shard).containsExactly(
+                coordinator.shards(start, end).stream().map(ShardCoordinator.Shard::id).toArray(Integer[]::new));
+
+        assertThat(result.workers()).hasSize(2);
+        assertThat(result.workers().stream().mapToLong(ShardCoordinator.WorkerStats::elements).sum()).isEqualTo(end - start);
+        assertThat(result.workers().stream().mapToInt(ShardCoordinator.WorkerStats::shards).sum()).isEqualTo(result.shards().size());
+
+        // the segments make up the text of the complete range
+        var text = new ByteArrayOutputStream();
+        for (ShardCoordinator.ShardResult shard : result.shards()) {
+            text.write(Files.readAllBytes(output.resolve(ShardWorker.segmentFileName(shard.shard()))));
+        }
+        try (var files = Files.list(output)) {
+            assertThat(files.count()).isEqualTo(result.shards().size());
+        }
+        Path expected = folder.newFile().toPath();
+        new FizzBuzzFileWriter().write(expected, start, end);
+        assertThat(text.toByteArray()).isEqualTo(Files.readAllBytes(expected));
+    }
+
+    @Test
+    public void retriesShardsOfFailedWorkers() throws Exception {
+        var coordinator = new ShardCoordinator(10_000, 2, Duration.ofSeconds(10));
+        long start = 1;
+        long end = 100_000;
+
+        ShardCoordinator.Result result;
+        try (ServerSocket server = server()) {
+            var run = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return coordinator.run(server, start, end, null);
+                }
+                catch (IOException | InterruptedException e) {
+                    throw new CompletionException(e);
+                }
+            });
+
+            // takes a shard and disconnects without answering
+            CountDownLatch failed = new CountDownLatch(1);
+            startFaultyWorker(server, failed);
+            failed.await();
+
+            startWorker(server, "good");
+            result = run.get();
+        }
+
+        assertThat(result.summary()).isEqualTo(ShardWorkerTest.summary(start, end));
+        assertThat(result.checksum()).isEqualTo(ShardWorkerTest.checksum(start, end));
+        assertThat(result.retries()).isEqualTo(1);
+        assertThat(result.shards()).hasSize(coordinator.shards(start, end).size());
+        assertThat(result.workers()).extracting(ShardCoordinator.WorkerStats::shards).containsExactlyInAnyOrder(0, 10);
+    }
+
+    @Test
+    public void failsAfterMaxAttempts() throws Exception {
+        var coordinator = new ShardCoordinator(10_000, 2, Duration.ofSeconds(10));
+
+        try (ServerSocket server = server()) {
+            Thread worker = new Thread(() -> {
+                // reconnects after each failure, until the coordinator has given up
+                for (int i = 0; i < 100; i++) {
+                    if (!fail(server)) {
+                        return;
+                    }
+                }
+            });
+            worker.setDaemon(true);
+            worker.start();
+
+            assertThatThrownBy(() -> coordinator.run(server, 1, 100_000, null))
+                    .isInstanceOf(IOException.class)
+                    .hasMessageContaining("failed 2 times");
+        }
+    }
+
+    @Test
+    public void closesConnectionsOnFailure() throws Exception {
+        var coordinator = new ShardCoordinator(10_000, 1, Duration.ofMinutes(1));
+
+        try (ServerSocket server = server()) {
+            long begin = System.nanoTime();
+            var run = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return coordinator.run(server, 1, 100_000, null);
+                }
+                catch (IOException | InterruptedException e) {
+                    throw new CompletionException(e);
+                }
+            });
+
+            // takes a shard and never answers
+            CountDownLatch received = new CountDownLatch(1);
+            CountDownLatch closed = new CountDownLatch(1);
+            Thread worker = new Thread(() -> {
+                try (Socket socket = new Socket(server.getInetAddress(), server.getLocalPort())) {
+                    var out = new DataOutputStream(socket.getOutputStream());
+                    out.writeInt(ShardCoordinator.PROTOCOL_VERSION);
+                    out.writeUTF("hanging");
+                    out.flush();
+
+                    var in = new DataInputStream(socket.getInputStream());
+                    in.readByte();
+                    in.readInt();
+                    in.readLong();
+                    in.readLong();
+                    in.readUTF();
+                    received.countDown();
+
+                    if (in.read() == -1) {
+                        closed.countDown();
+                    }
+                }
+                catch (IOException e) {
+                    // the test fails on the latch
+                }
+            });
+            worker.setDaemon(true);
+            worker.start();
+            received.await();
+
+            startFaultyWorker(server, new CountDownLatch(1));
+
+            assertThatThrownBy(run::join).hasCauseInstanceOf(IOException.class).hasMessageContaining("failed 1 times");
+            assertThat(Duration.ofNanos(System.nanoTime() - begin)).isLessThan(Duration.ofSeconds(30));
+            assertThat(closed.await(10, TimeUnit.SECONDS)).isTrue();
+        }
+    }
+
+    @Test
+    public void failsWithoutWorkers() throws Exception {
+        var coordinator = new ShardCoordinator(10_000, 2, Duration.ofMillis(500));
+
+        try (ServerSocket server = server()) {
+            assertThatThrownBy(() -> coordinator.run(server, 1, 100_000, null))
+                    .isInstanceOf(IOException.class)
+                    .hasMessageContaining("No worker connected");
+        }
+    }
+
+    private static ServerSocket server() throws IOException {
+        return new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    }
+
+    private static void startWorker(ServerSocket server, String name) {
+        Thread worker = new Thread(() -> {
+            try {
+                new ShardWorker(name).run(server.getInetAddress().getHostAddress(), server.getLocalPort());
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    private static void startFaultyWorker(ServerSocket server, CountDownLatch failed) {
+        Thread worker = new Thread(() -> {
+            fail(server);
+            failed.countDown();
+        });
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Connects to the coordinator, takes a shard and disconnects without answering;
+     * returns whether a shard was received.
+     */
+    private static boolean fail(ServerSocket server) {
+        try (Socket socket = new Socket(server.getInetAddress(), server.getLocalPort())) {
+            socket.setSoTimeout(1000);
+            var out = new DataOutputStream(socket.getOutputStream());
+            out.writeInt(ShardCoordinator.PROTOCOL_VERSION);
+            out.writeUTF("faulty");
+            out.flush();
+
+            var in = new DataInputStream(socket.getInputStream());
+            in.readByte();
+            in.readInt();
+            return true;
+        }
+        catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ *  Copyright 2021 Gunnar Morling
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package dev.morling.demos.simdfizzbuzz;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class ShardWorkerTest {
+
+    @Test
+    public void compute() {
+        var worker = new ShardWorker("test");
+
+        long[][] ranges = { { 1, 1 }, { 1, 2 }, { 1, 101 }, { 7, 100_007 }, { 5_000_000_000L, 5_000_040_001L } };
+        for (long[] range : ranges) {
+            var result = worker.compute(42, range[0], range[1]);
+
+            assertThat(result.shard()).isEqualTo(42);
+            assertThat(result.worker()).isEqualTo("test");
+            assertThat(result.summary()).describedAs("[%d, %d)", range[0], range[1]).isEqualTo(summary(range[0], range[1]));
+            assertThat(result.checksum()).isEqualTo(checksum(range[0], range[1]));
+        }
+    }
+
+    @Test
+    public void segmentFileName() {
+        assertThat(ShardWorker.segmentFileName(0)).isEqualTo("shard-0000000000.txt");
+        assertThat(ShardWorker.segmentFileName(1_041_666)).isEqualTo("shard-0001041666.txt");
+        assertThat(ShardWorker.segmentFileName(Integer.MAX_VALUE)).isEqualTo("shard-2147483647.txt");
+    }
+
+    static FizzBuzz.Summary summary(long from, long to) {
+        long fizz = 0;
+        long buzz = 0;
+        long fizzBuzz = 0;
+        long numbers = 0;
+        long numberSum = 0;
+
+        for (long value = from; value < to; value++) {
+            long result = fizzBuzz(value);
+            if (result == -1) {
+                fizz++;
+            }
+            else if (result == -2) {
+                buzz++;
+            }
+            else if (result == -3) {
+                fizzBuzz++;
+            }
+            else {
+                numbers++;
+                numberSum += result;
+            }
+        }
+
+        return new FizzBuzz.Summary(fizz, buzz, fizzBuzz, numbers, numberSum);
+    }
+
+    static long checksum(long from, long to) {
+        long checksum = 0;
+        for (long value = from; value < to; value++) {
+            checksum += fizzBuzz(value) * value;
+        }
+        return checksum;
+    }
+
+    private static long fizzBuzz(long value) {
+        return value % 15 == 0 ? -3 : value % 3 == 0 ? -1 : value % 5 == 0 ? -2 : value;
+    }
+}